@@ -0,0 +1,34 @@
+package one.microstream.demo.bookstore.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point for the benchmarks, which reports throughput, latency percentiles and
+ * the allocation rate per operation.
+ * <p>
+ * All standard JMH command line options are supported, e.g. <code>-p dataAmount=small</code>
+ * to select the data amount or a regular expression to select specific benchmarks.
+ *
+ */
+public class BenchmarkRunner
+{
+	public static void main(final String[] args) throws RunnerException, CommandLineOptionException
+	{
+		final CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+		final OptionsBuilder     options            = new OptionsBuilder();
+		options.parent(commandLineOptions);
+		if(commandLineOptions.getIncludes().isEmpty())
+		{
+			options.include(BenchmarkRunner.class.getPackageName() + ".*Benchmark");
+		}
+		options.addProfiler(GCProfiler.class);
+
+		new Runner(options.build()).run();
+	}
+
+}
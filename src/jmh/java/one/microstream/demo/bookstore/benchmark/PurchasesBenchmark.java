@@ -0,0 +1,171 @@
+package one.microstream.demo.bookstore.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.money.MonetaryAmount;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import one.microstream.demo.bookstore.BookStoreDemo;
+import one.microstream.demo.bookstore.data.BookSales;
+import one.microstream.demo.bookstore.data.Country;
+import one.microstream.demo.bookstore.data.Data;
+import one.microstream.demo.bookstore.data.Employee;
+import one.microstream.demo.bookstore.data.Purchase;
+import one.microstream.demo.bookstore.data.Purchases;
+import one.microstream.demo.bookstore.data.RandomDataAmount;
+import one.microstream.demo.bookstore.data.Shop;
+
+/**
+ * Benchmarks of all analytical queries of {@link Purchases}.
+ * <p>
+ * A {@link BookStoreDemo} with a deterministic random data set is created in a temporary directory
+ * for each trial. The same {@link #dataAmount} and {@link #randomSeed} always produce the same data.
+ * <p>
+ * The queries are executed on the most recent year, the first shop and its country.
+ *
+ * @see PurchasesWarmBenchmark
+ * @see PurchasesColdBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public abstract class PurchasesBenchmark
+{
+	@Param({"small", "medium", "large", "humongous"})
+	String        dataAmount;
+
+	@Param("42")
+	long          randomSeed;
+
+	Path          dataDirectory;
+	BookStoreDemo bookStoreDemo;
+	Purchases     purchases;
+	int           year;
+	Shop          shop;
+	Country       country;
+
+	protected PurchasesBenchmark()
+	{
+		super();
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException
+	{
+		this.dataDirectory = Files.createTempDirectory("bookstore-benchmark");
+		this.bookStoreDemo = new BookStoreDemo(
+			RandomDataAmount.valueOf(this.dataAmount),
+			this.dataDirectory,
+			this.randomSeed
+		);
+
+		final Data data = this.bookStoreDemo.data();
+		this.purchases  = data.purchases();
+		this.year       = this.purchases.years().upperEndpoint();
+		this.shop       = data.shops().all().get(0);
+		this.country    = this.shop.address().city().state().country();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException
+	{
+		this.bookStoreDemo.shutdown();
+
+		try(final Stream<Path> paths = Files.walk(this.dataDirectory))
+		{
+			for(final Path path : (Iterable<Path>)paths.sorted(Comparator.reverseOrder())::iterator)
+			{
+				Files.delete(path);
+			}
+		}
+	}
+
+	@Benchmark
+	public List<BookSales> bestSellerList()
+	{
+		return this.purchases.bestSellerList(this.year);
+	}
+
+	@Benchmark
+	public List<BookSales> bestSellerListByCountry()
+	{
+		return this.purchases.bestSellerList(this.year, this.country);
+	}
+
+	@Benchmark
+	public List<BookSales> bestSellerListTopTen()
+	{
+		return this.purchases.bestSellerList(this.year, 10);
+	}
+
+	@Benchmark
+	public List<BookSales> bestSellerListByCountryTopTen()
+	{
+		return this.purchases.bestSellerList(this.year, this.country, 10);
+	}
+
+	@Benchmark
+	public Employee employeeOfTheYear()
+	{
+		return this.purchases.employeeOfTheYear(this.year);
+	}
+
+	@Benchmark
+	public Employee employeeOfTheYearByCountry()
+	{
+		return this.purchases.employeeOfTheYear(this.year, this.country);
+	}
+
+	@Benchmark
+	public long countPurchasesOfForeigners()
+	{
+		return this.purchases.countPurchasesOfForeigners(this.year);
+	}
+
+	@Benchmark
+	public long countPurchasesOfForeignersByCountry()
+	{
+		return this.purchases.countPurchasesOfForeigners(this.year, this.country);
+	}
+
+	@Benchmark
+	public List<Purchase> purchasesOfForeigners()
+	{
+		return this.purchases.purchasesOfForeigners(this.year);
+	}
+
+	@Benchmark
+	public List<Purchase> purchasesOfForeignersByCountry()
+	{
+		return this.purchases.purchasesOfForeigners(this.year, this.country);
+	}
+
+	@Benchmark
+	public MonetaryAmount revenueOfShopInYear()
+	{
+		return this.purchases.revenueOfShopInYear(this.shop, this.year);
+	}
+
+}
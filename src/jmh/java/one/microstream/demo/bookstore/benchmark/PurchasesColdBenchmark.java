@@ -0,0 +1,32 @@
+package one.microstream.demo.bookstore.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+
+import one.microstream.demo.bookstore.data.Purchases;
+
+/**
+ * Executes the {@link PurchasesBenchmark}s with all purchases unloaded before every invocation,
+ * so every query has to load its data from the storage.
+ * The cached query results are discarded as well, so no query is served from the cache.
+ *
+ * @see Purchases#clear()
+ */
+public class PurchasesColdBenchmark extends PurchasesBenchmark
+{
+	public PurchasesColdBenchmark()
+	{
+		super();
+	}
+
+	/*
+	 * Level.Invocation adds some overhead to every call,
+	 * which is negligible compared to loading the purchases from the storage.
+	 */
+	@Setup(Level.Invocation)
+	public void clearPurchases()
+	{
+		this.purchases.clear();
+	}
+
+}
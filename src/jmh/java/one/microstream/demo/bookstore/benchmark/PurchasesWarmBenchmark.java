@@ -0,0 +1,16 @@
+package one.microstream.demo.bookstore.benchmark;
+
+/**
+ * Executes the {@link PurchasesBenchmark}s with all accessed data already loaded.
+ * <p>
+ * The data is loaded by the first invocations during the warmup iterations and kept in memory.
+ *
+ */
+public class PurchasesWarmBenchmark extends PurchasesBenchmark
+{
+	public PurchasesWarmBenchmark()
+	{
+		super();
+	}
+
+}
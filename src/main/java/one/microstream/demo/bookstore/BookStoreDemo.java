@@ -3,7 +3,10 @@ package one.microstream.demo.bookstore;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
 
 import javax.money.CurrencyUnit;
 import javax.money.Monetary;
@@ -19,6 +22,7 @@ import org.springframework.boot.SpringApplication;
 
 import one.microstream.demo.bookstore.data.Data;
 import one.microstream.demo.bookstore.data.DataMetrics;
+import one.microstream.demo.bookstore.data.PurchasesEvictionManager;
 import one.microstream.demo.bookstore.data.RandomDataAmount;
 import one.microstream.persistence.binary.jdk8.types.BinaryHandlersJDK8;
 import one.microstream.storage.embedded.configuration.types.EmbeddedStorageConfiguration;
@@ -96,6 +100,29 @@ public final class BookStoreDemo implements HasLogger
 		return RoundedMoney.of(scale(number), CURRENCY_UNIT);
 	}
 
+	/**
+	 * Converts minor units of the {@link #CURRENCY_UNIT} (cents) into a {@link MonetaryAmount}
+	 * @param cents the amount in cents
+	 * @return the converted {@link MonetaryAmount}
+	 */
+	public static MonetaryAmount moneyOfCents(final long cents)
+	{
+		return money(BigDecimal.valueOf(cents, CURRENCY_UNIT.getDefaultFractionDigits()));
+	}
+
+	/**
+	 * Converts a {@link MonetaryAmount} into minor units of the {@link #CURRENCY_UNIT} (cents)
+	 * @param amount the amount to convert
+	 * @return the amount in cents
+	 */
+	public static long cents(final MonetaryAmount amount)
+	{
+		return amount.getNumber().numberValue(BigDecimal.class)
+			.movePointRight(CURRENCY_UNIT.getDefaultFractionDigits())
+			.setScale(0, RoundingMode.HALF_UP)
+			.longValueExact();
+	}
+
 	/**
 	 * Calculates the retail price based on a purchase price by adding a margin.
 	 * @param purchasePrice the purchase price
@@ -110,21 +137,57 @@ public final class BookStoreDemo implements HasLogger
 	}
 
 
-	private final    RandomDataAmount       initialDataAmount;
-	private volatile EmbeddedStorageManager storageManager   ;
+	private final    RandomDataAmount         initialDataAmount       ;
+	private final    Path                     dataDirectory           ;
+	private final    long                     randomSeed              ;
+	private volatile EmbeddedStorageManager   storageManager          ;
+	private          PurchasesEvictionManager purchasesEvictionManager;
 
 	/**
-	 * Creates a new demo instance.
+	 * Creates a new demo instance, which uses the "data" directory
+	 * and generates different random data on every initialization.
 	 *
 	 * @param initialDataAmount the amount of data which should be generated if the database is empty
 	 */
 	public BookStoreDemo(final RandomDataAmount initialDataAmount)
+	{
+		this(
+			initialDataAmount,
+			Paths.get("data"),
+			ThreadLocalRandom.current().nextLong()
+		);
+	}
+
+	/**
+	 * Creates a new demo instance.
+	 *
+	 * @param initialDataAmount the amount of data which should be generated if the database is empty
+	 * @param dataDirectory the directory for the storage and the search indices
+	 * @param randomSeed the seed for the random data generation, the same seed produces the same data
+	 */
+	public BookStoreDemo(
+		final RandomDataAmount initialDataAmount,
+		final Path             dataDirectory    ,
+		final long             randomSeed
+	)
 	{
 		super();
 		this.initialDataAmount = initialDataAmount;
+		this.dataDirectory     = dataDirectory    ;
+		this.randomSeed        = randomSeed       ;
 		BookStoreDemo.instance = this;
 	}
 
+	/**
+	 * Gets the directory which contains the storage and the search indices.
+	 *
+	 * @return the data directory of this demo
+	 */
+	public Path dataDirectory()
+	{
+		return this.dataDirectory;
+	}
+
 	/**
 	 * Gets the lazily initialized {@link EmbeddedStorageManager} used by this demo.
 	 * If no storage data is found, a {@link Data} root object is generated randomly,
@@ -161,7 +224,7 @@ public final class BookStoreDemo implements HasLogger
 		this.logger().info("Initializing MicroStream StorageManager");
 		
 		final EmbeddedStorageFoundation<?> foundation = EmbeddedStorageConfiguration.Builder()
-			.setStorageDirectory("data/storage")
+			.setStorageDirectory(this.dataDirectory.resolve("storage").toString())
 			.setChannelCount(Math.max(
 				1, // minimum one channel, if only 1 core is available
 				Integer.highestOneBit(Runtime.getRuntime().availableProcessors() - 1)
@@ -180,11 +243,33 @@ public final class BookStoreDemo implements HasLogger
 			storageManager.storeRoot();
 			final DataMetrics metrics = data.populate(
 				this.initialDataAmount,
+				this.randomSeed,
 				storageManager
 			);
 
 			this.logger().info("Random data generated: " + metrics.toString());
 		}
+		else if(((Data)storageManager.root()).geography() == null)
+		{
+			/*
+			 * Storage of an earlier version, which is not migrated, see README.
+			 */
+			storageManager.shutdown();
+			throw new IllegalStateException(
+				"Storage was created by an earlier version, delete it to generate new data: "
+					+ this.dataDirectory.toAbsolutePath()
+			);
+		}
+
+		this.purchasesEvictionManager = new PurchasesEvictionManager(
+			((Data)storageManager.root()).purchases()
+		)
+		.start();
+
+		/*
+		 * Checks the search index, an outdated index is rebuilt in the background.
+		 */
+		((Data)storageManager.root()).books().openIndex();
 
 		return storageManager;
 	}
@@ -200,13 +285,28 @@ public final class BookStoreDemo implements HasLogger
 		return (Data)this.storageManager().root();
 	}
 
+	/**
+	 * Gets the {@link PurchasesEvictionManager} of this demo, which keeps the memory usage of the purchases in check.
+	 *
+	 * @return the eviction manager, e.g. for its metrics
+	 */
+	public PurchasesEvictionManager purchasesEvictionManager()
+	{
+		this.storageManager(); // ensure initialization
+		return this.purchasesEvictionManager;
+	}
+
 	/**
 	 * Shuts down the {@link EmbeddedStorageManager} of this demo.
+	 * Pending changes of the search index are committed before.
 	 */
 	public synchronized void shutdown()
 	{
 		if(this.storageManager != null)
 		{
+			this.purchasesEvictionManager.stop();
+			this.purchasesEvictionManager = null;
+			this.data().books().closeIndex();
 			this.storageManager.shutdown();
 			this.storageManager = null;
 		}
@@ -47,13 +47,7 @@ public class Commands
 
 		Country searchCountry(final String countryCode)
 		{
-			return this.data().shops().compute(shops ->
-				shops.map(s -> s.address().city().state().country())
-					.distinct()
-					.filter(c -> c.code().equalsIgnoreCase(countryCode))
-					.findAny()
-					.orElse(null)
-			);
+			return this.data().geography().countryOfCode(countryCode);
 		}
 
 	}
@@ -134,7 +128,7 @@ public class Commands
 
 			if(this.country.isEmpty())
 			{
-				final List<BookSales> bestSellerList = this.data().purchases().bestSellerList(year);
+				final List<BookSales> bestSellerList = this.data().purchases().bestSellerList(year, 10);
 				if(bestSellerList.isEmpty())
 				{
 					System.out.println("No books sold in " + year);
@@ -142,7 +136,7 @@ public class Commands
 				else
 				{
 					System.out.println("Best selling books in " + year);
-					bestSellerList.stream().limit(10).forEach(sales ->
+					bestSellerList.forEach(sales ->
 					{
 						System.out.println(sales.amount() + " "
 							+ sales.book().title() + "; by "
@@ -160,7 +154,7 @@ public class Commands
 				}
 				else
 				{
-					final List<BookSales> bestSellerList = this.data().purchases().bestSellerList(year, country);
+					final List<BookSales> bestSellerList = this.data().purchases().bestSellerList(year, country, 10);
 					if(bestSellerList.isEmpty())
 					{
 						System.out.println("No books sold in " + country.name() + " in " + year);
@@ -168,7 +162,7 @@ public class Commands
 					else
 					{
 						System.out.println("Best selling books in " + country.name() + " in " + year);
-						bestSellerList.stream().limit(10).forEach(sales ->
+						bestSellerList.forEach(sales ->
 						{
 							System.out.println(sales.amount() + " "
 								+ sales.book().title() + "; by "
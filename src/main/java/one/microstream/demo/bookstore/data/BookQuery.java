@@ -0,0 +1,177 @@
+package one.microstream.demo.bookstore.data;
+
+import static one.microstream.demo.bookstore.util.ValidationUtils.requirePositive;
+import static one.microstream.demo.bookstore.util.ValidationUtils.requireZeroOrPositive;
+
+import javax.money.MonetaryAmount;
+
+/**
+ * Criteria of a catalog search, see {@link Books#search(BookQuery)}.
+ * <p>
+ * All criteria are optional, unset criteria match all books.
+ * The author, genre, publisher and language are matched by their exact name,
+ * the title is matched by a full text phrase query.
+ * <p>
+ * This type is not thread safe, it is meant to be created per search:
+ * <pre>
+ * BookSearchResult result = books.search(
+ *    new BookQuery()
+ *        .title("heart")
+ *        .genre("Fantasy")
+ *        .limit(20)
+ * );
+ * </pre>
+ */
+public class BookQuery
+{
+	/**
+	 * Default maximum amount of returned books.
+	 */
+	public final static int DEFAULT_LIMIT = 100;
+
+	private String         title         ;
+	private String         author        ;
+	private String         genre         ;
+	private String         publisher     ;
+	private String         language      ;
+	private MonetaryAmount minRetailPrice;
+	private MonetaryAmount maxRetailPrice;
+	private int            offset        = 0;
+	private int            limit         = DEFAULT_LIMIT;
+
+	public BookQuery()
+	{
+		super();
+	}
+
+	/**
+	 * @param title the full text query for the title, or <code>null</code>
+	 * @return this
+	 */
+	public BookQuery title(final String title)
+	{
+		this.title = title;
+		return this;
+	}
+
+	/**
+	 * @param author the exact name of the author, or <code>null</code>
+	 * @return this
+	 */
+	public BookQuery author(final String author)
+	{
+		this.author = author;
+		return this;
+	}
+
+	/**
+	 * @param genre the exact name of the genre, or <code>null</code>
+	 * @return this
+	 */
+	public BookQuery genre(final String genre)
+	{
+		this.genre = genre;
+		return this;
+	}
+
+	/**
+	 * @param publisher the exact name of the publisher, or <code>null</code>
+	 * @return this
+	 */
+	public BookQuery publisher(final String publisher)
+	{
+		this.publisher = publisher;
+		return this;
+	}
+
+	/**
+	 * @param language the exact name of the language, or <code>null</code>
+	 * @return this
+	 */
+	public BookQuery language(final String language)
+	{
+		this.language = language;
+		return this;
+	}
+
+	/**
+	 * @param minRetailPrice the inclusive lower bound of the retail price, or <code>null</code>
+	 * @param maxRetailPrice the inclusive upper bound of the retail price, or <code>null</code>
+	 * @return this
+	 */
+	public BookQuery retailPrice(
+		final MonetaryAmount minRetailPrice,
+		final MonetaryAmount maxRetailPrice
+	)
+	{
+		this.minRetailPrice = minRetailPrice;
+		this.maxRetailPrice = maxRetailPrice;
+		return this;
+	}
+
+	/**
+	 * @param offset the number of books to skip, zero or positive
+	 * @return this
+	 */
+	public BookQuery offset(final int offset)
+	{
+		this.offset = requireZeroOrPositive(offset, () -> "Offset cannot be negative");
+		return this;
+	}
+
+	/**
+	 * @param limit the maximum amount of returned books, positive
+	 * @return this
+	 */
+	public BookQuery limit(final int limit)
+	{
+		this.limit = requirePositive(limit, () -> "Limit must be positive");
+		return this;
+	}
+
+	public String title()
+	{
+		return this.title;
+	}
+
+	public String author()
+	{
+		return this.author;
+	}
+
+	public String genre()
+	{
+		return this.genre;
+	}
+
+	public String publisher()
+	{
+		return this.publisher;
+	}
+
+	public String language()
+	{
+		return this.language;
+	}
+
+	public MonetaryAmount minRetailPrice()
+	{
+		return this.minRetailPrice;
+	}
+
+	public MonetaryAmount maxRetailPrice()
+	{
+		return this.maxRetailPrice;
+	}
+
+	public int offset()
+	{
+		return this.offset;
+	}
+
+	public int limit()
+	{
+		return this.limit;
+	}
+
+}
@@ -0,0 +1,109 @@
+package one.microstream.demo.bookstore.data;
+
+import java.util.List;
+
+/**
+ * Result of a catalog search: a page of the found books, the total amount of hits
+ * and the facet counts of all hits, ordered by count descending.
+ * <p>
+ * This type is immutable and therefor inherently thread safe.
+ *
+ * @see Books#search(BookQuery)
+ */
+public class BookSearchResult
+{
+	private final List<Book>       books     ;
+	private final int              totalHits ;
+	private final List<FacetCount> authors   ;
+	private final List<FacetCount> genres    ;
+	private final List<FacetCount> publishers;
+	private final List<FacetCount> languages ;
+
+	BookSearchResult(
+		final List<Book>       books     ,
+		final int              totalHits ,
+		final List<FacetCount> authors   ,
+		final List<FacetCount> genres    ,
+		final List<FacetCount> publishers,
+		final List<FacetCount> languages
+	)
+	{
+		super();
+		this.books      = List.copyOf(books);
+		this.totalHits  = totalHits;
+		this.authors    = List.copyOf(authors);
+		this.genres     = List.copyOf(genres);
+		this.publishers = List.copyOf(publishers);
+		this.languages  = List.copyOf(languages);
+	}
+
+	/**
+	 * Get the requested page of the found books, ordered by relevance.
+	 *
+	 * @return the found books
+	 */
+	public List<Book> books()
+	{
+		return this.books;
+	}
+
+	/**
+	 * Get the total amount of found books, regardless of the requested page.
+	 *
+	 * @return the amount of found books
+	 */
+	public int totalHits()
+	{
+		return this.totalHits;
+	}
+
+	/**
+	 * Get the amount of found books per author name.
+	 *
+	 * @return the facet counts
+	 */
+	public List<FacetCount> authors()
+	{
+		return this.authors;
+	}
+
+	/**
+	 * Get the amount of found books per genre name.
+	 *
+	 * @return the facet counts
+	 */
+	public List<FacetCount> genres()
+	{
+		return this.genres;
+	}
+
+	/**
+	 * Get the amount of found books per publisher name.
+	 *
+	 * @return the facet counts
+	 */
+	public List<FacetCount> publishers()
+	{
+		return this.publishers;
+	}
+
+	/**
+	 * Get the amount of found books per language name.
+	 *
+	 * @return the facet counts
+	 */
+	public List<FacetCount> languages()
+	{
+		return this.languages;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "BookSearchResult"
+			+ " [books="     + this.books.size()
+			+ ", totalHits=" + this.totalHits
+			+ "]";
+	}
+
+}
@@ -2,25 +2,42 @@
 package one.microstream.demo.bookstore.data;
 
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toUnmodifiableList;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
+import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MatchNoDocsQuery;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.QueryBuilder;
+import org.rapidpm.dependencies.core.logger.HasLogger;
 
 import one.microstream.demo.bookstore.BookStoreDemo;
 import one.microstream.demo.bookstore.data.Index.DocumentPopulator;
 import one.microstream.demo.bookstore.data.Index.EntityMatcher;
 import one.microstream.demo.bookstore.util.concurrent.ReadWriteLocked;
+import one.microstream.exceptions.IORuntimeException;
 import one.microstream.persistence.types.Persister;
 import one.microstream.storage.embedded.types.EmbeddedStorageManager;
 
@@ -31,12 +48,227 @@ import one.microstream.storage.embedded.types.EmbeddedStorageManager;
  * {@link Publisher}s and {@link Language}s.
  * <p>
  * All operations on this type are thread safe.
+ * Read operations don't acquire any locks, they work on an immutable snapshot,
+ * which is replaced by the write operations after the changes have been stored.
+ * The new snapshot is derived from the previous one, so adding a book doesn't sort all books again.
  *
  * @see Data#books()
  * @see ReadWriteLocked
  */
-public class Books extends ReadWriteLocked
+public class Books extends ReadWriteLocked implements HasLogger
 {
+	/**
+	 * Immutable copy of all books and lookup maps, used by the read operations.
+	 */
+	private static class Snapshot
+	{
+		final Map<String, Book>          isbn13ToBook    ;
+		final Map<Author, List<Book>>    authorToBooks   ;
+		final Map<Genre, List<Book>>     genreToBooks    ;
+		final Map<Publisher, List<Book>> publisherToBooks;
+		final Map<Language, List<Book>>  languageToBooks ;
+		/*
+		 * Books by their dense id, used to resolve search hits.
+		 */
+		final Book[]                     idToBook        ;
+		/*
+		 * Type-ahead suggestions of the titles and author names.
+		 */
+		final Suggester                  suggester       ;
+		final long                       version         ;
+
+		/*
+		 * Pre-sorted lists, so the sorted getters don't have to sort on every call.
+		 */
+		final List<Book>                 books           ;
+		final List<Author>               authors         ;
+		final List<Genre>                genres          ;
+		final List<Publisher>            publishers      ;
+		final List<Language>             languages       ;
+
+		Snapshot(final Books books)
+		{
+			super();
+
+			this.isbn13ToBook     = Map.copyOf(books.isbn13ToBook);
+			this.authorToBooks    = copyOf(books.authorToBooks);
+			this.genreToBooks     = copyOf(books.genreToBooks);
+			this.publisherToBooks = copyOf(books.publisherToBooks);
+			this.languageToBooks  = copyOf(books.languageToBooks);
+			this.version          = books.version;
+			this.idToBook         = idToBook(this.isbn13ToBook.values());
+
+			this.books            = sorted(this.isbn13ToBook.values());
+			this.authors          = sorted(this.authorToBooks.keySet());
+			this.genres           = sorted(this.genreToBooks.keySet());
+			this.publishers       = sorted(this.publisherToBooks.keySet());
+			this.languages        = sorted(this.languageToBooks.keySet());
+
+			this.suggester        = new Suggester(
+				Stream.concat(
+					this.books.stream().map(Book::title),
+					this.authors.stream().map(Author::name)
+				)
+				.distinct()
+				.collect(toList())
+			);
+		}
+
+		/**
+		 * Creates a snapshot from the previous one, after books were added which didn't replace existing ones.
+		 * Only the lists of the touched keys are copied, and the new entries are merged into the
+		 * sorted lists and the suggester, instead of sorting everything again.
+		 */
+		Snapshot(
+			final Snapshot                   previous,
+			final Books                      books   ,
+			final Collection<? extends Book> added
+		)
+		{
+			super();
+
+			this.isbn13ToBook     = Map.copyOf(books.isbn13ToBook);
+			this.authorToBooks    = copyOf(previous.authorToBooks   , books.authorToBooks   , added, Book::author   );
+			this.genreToBooks     = copyOf(previous.genreToBooks    , books.genreToBooks    , added, Book::genre    );
+			this.publisherToBooks = copyOf(previous.publisherToBooks, books.publisherToBooks, added, Book::publisher);
+			this.languageToBooks  = copyOf(previous.languageToBooks , books.languageToBooks , added, Book::language );
+			this.version          = books.version;
+			this.idToBook         = idToBook(previous.idToBook, this.isbn13ToBook.size(), added);
+
+			final List<Author> newAuthors = newKeys(previous.authorToBooks, added, Book::author);
+			this.books            = merge(previous.books     , added);
+			this.authors          = merge(previous.authors   , newAuthors);
+			this.genres           = merge(previous.genres    , newKeys(previous.genreToBooks    , added, Book::genre    ));
+			this.publishers       = merge(previous.publishers, newKeys(previous.publisherToBooks, added, Book::publisher));
+			this.languages        = merge(previous.languages , newKeys(previous.languageToBooks , added, Book::language ));
+
+			this.suggester        = previous.suggester.with(
+				Stream.concat(
+					added.stream().map(Book::title),
+					newAuthors.stream().map(Author::name)
+				)
+				.distinct()
+				.collect(toList())
+			);
+		}
+
+		private static <K> Map<K, List<Book>> copyOf(final Map<K, List<Book>> map)
+		{
+			final Map<K, List<Book>> copy = new HashMap<>(map.size() * 2);
+			map.forEach((key, list) -> copy.put(key, List.copyOf(list)));
+			return Collections.unmodifiableMap(copy);
+		}
+
+		private static Book[] idToBook(final Collection<Book> books)
+		{
+			final Book[] idToBook = new Book[books.size() + 1];
+			books.forEach(book -> idToBook[book.id()] = book);
+			return idToBook;
+		}
+
+		private static <T extends Comparable<? super T>> List<T> sorted(final Collection<T> collection)
+		{
+			return collection.stream()
+				.sorted()
+				.collect(toUnmodifiableList());
+		}
+
+		/**
+		 * Copies the previous map, only the lists of the keys of the added books are copied again.
+		 */
+		private static <K> Map<K, List<Book>> copyOf(
+			final Map<K, List<Book>>         previous,
+			final Map<K, List<Book>>         current ,
+			final Collection<? extends Book> added   ,
+			final Function<Book, K>          key
+		)
+		{
+			final Map<K, List<Book>> copy = new HashMap<>(previous);
+			added.stream()
+				.map(key)
+				.distinct()
+				.forEach(k -> copy.put(k, List.copyOf(current.get(k))));
+			return Collections.unmodifiableMap(copy);
+		}
+
+		private static Book[] idToBook(
+			final Book[]                     previous,
+			final int                        size    ,
+			final Collection<? extends Book> added
+		)
+		{
+			final Book[] idToBook = Arrays.copyOf(previous, Math.max(previous.length, size + 1));
+			added.forEach(book -> idToBook[book.id()] = book);
+			return idToBook;
+		}
+
+		/**
+		 * Gets the distinct keys of the added books, which are not contained in the previous map.
+		 */
+		private static <K> List<K> newKeys(
+			final Map<K, List<Book>>         previous,
+			final Collection<? extends Book> added   ,
+			final Function<Book, K>          key
+		)
+		{
+			return added.stream()
+				.map(key)
+				.distinct()
+				.filter(k -> !previous.containsKey(k))
+				.collect(toList());
+		}
+
+		/**
+		 * Merges new elements into a sorted list, only the new elements have to be sorted.
+		 */
+		private static <T extends Comparable<? super T>> List<T> merge(
+			final List<T>                 sorted,
+			final Collection<? extends T> added
+		)
+		{
+			if(added.isEmpty())
+			{
+				return sorted;
+			}
+
+			final List<T> addedSorted = added.stream()
+				.sorted()
+				.collect(toList());
+			final List<T> merged      = new ArrayList<>(sorted.size() + addedSorted.size());
+			int           i           = 0;
+			int           j           = 0;
+			while(i < sorted.size() && j < addedSorted.size())
+			{
+				merged.add(
+					sorted.get(i).compareTo(addedSorted.get(j)) <= 0
+						? sorted.get(i++)
+						: addedSorted.get(j++)
+				);
+			}
+			merged.addAll(sorted.subList(i, sorted.size()));
+			merged.addAll(addedSorted.subList(j, addedSorted.size()));
+			return Collections.unmodifiableList(merged);
+		}
+	}
+
+
+	/*
+	 * Fields of the full text search index.
+	 * The name fields are indexed untokenized for exact filtering, and as doc values for the facet counts.
+	 */
+	private final static String   TITLE_FIELD          = "title";
+	private final static String   AUTHOR_NAME_FIELD    = "authorName";
+	private final static String   GENRE_NAME_FIELD     = "genreName";
+	private final static String   PUBLISHER_NAME_FIELD = "publisherName";
+	private final static String   LANGUAGE_NAME_FIELD  = "languageName";
+	private final static String   RETAIL_PRICE_FIELD   = "retailPrice";
+	private final static String[] FACET_FIELDS         = {
+		AUTHOR_NAME_FIELD   ,
+		GENRE_NAME_FIELD    ,
+		PUBLISHER_NAME_FIELD,
+		LANGUAGE_NAME_FIELD
+	};
+
 	/*
 	 * Multiple maps holding references to the books, for a faster lookup.
 	 */
@@ -45,13 +277,25 @@ public class Books extends ReadWriteLocked
 	private final Map<Genre, List<Book>>     genreToBooks     = new HashMap<>();
 	private final Map<Publisher, List<Book>> publisherToBooks = new HashMap<>();
 	private final Map<Language, List<Book>>  languageToBooks  = new HashMap<>();
+	/*
+	 * Incremented with every modification, the full text search index carries the version it reflects.
+	 */
+	private       long                       version          ;
 	/**
-	 * Index used by {@link #searchByTitle(String)}.
+	 * Index used by {@link #searchByTitle(String, int, int)}.
 	 */
 	/*
 	 * Transient means it is not persisted by MicroStream, but created on demand.
 	 */
 	private transient volatile Index<Book>   index;
+	/*
+	 * Snapshot for the read operations, it is replaced after every modification.
+	 */
+	private transient volatile Snapshot      snapshot;
+	/*
+	 * False until the index is known to be in sync with the books, searches scan all books meanwhile.
+	 */
+	private transient volatile boolean       indexReady;
 	
 	public Books()
 	{
@@ -85,9 +329,16 @@ public class Books extends ReadWriteLocked
 	{
 		this.write(() ->
 		{
-			this.ensureIndex().add(book);
-			this.addToCollections(book);
+			final Index<Book> index    = this.ensureIndex();
+			final Snapshot    previous = this.snapshot;
+			final boolean     replaced = this.addToCollections(book);
+			this.version++;
 			this.storeCollections(persister);
+			this.updateSnapshot(previous, replaced, List.of(book));
+
+			// after the id is assigned
+			index.add(book);
+			index.setVersion(this.version);
 		});
 	}
 
@@ -117,12 +368,47 @@ public class Books extends ReadWriteLocked
 	{
 		this.write(() ->
 		{
-			this.ensureIndex().addAll(books);
-			books.forEach(this::addToCollections);
+			final Index<Book> index    = this.ensureIndex();
+			final Snapshot    previous = this.snapshot;
+			boolean           replaced = false;
+			for(final Book book : books)
+			{
+				replaced |= this.addToCollections(book);
+			}
+			this.version++;
 			this.storeCollections(persister);
+			this.updateSnapshot(previous, replaced, books);
+
+			// after the ids are assigned
+			index.addAll(books);
+			index.setVersion(this.version);
 		});
 	}
 
+	/**
+	 * Replaces the snapshot after books were added, the caller has to hold the write lock.
+	 * <p>
+	 * If no snapshot was created yet, it is created on demand by the next read operation.
+	 * If books replaced existing ones with the same ISBN, the snapshot is created from scratch,
+	 * otherwise it is derived from the previous one, see {@link Snapshot#Snapshot(Snapshot, Books, Collection)}.
+	 *
+	 * @param previous the snapshot before the books were added
+	 * @param replaced if any existing books were replaced
+	 * @param added the added books
+	 */
+	private void updateSnapshot(
+		final Snapshot                   previous,
+		final boolean                    replaced,
+		final Collection<? extends Book> added
+	)
+	{
+		this.snapshot = previous == null
+			? null
+			: replaced
+				? new Snapshot(this)
+				: new Snapshot(previous, this, added);
+	}
+
 	/**
 	 * Stores all collections of this implementation with the given persister.
 	 *
@@ -131,6 +417,7 @@ public class Books extends ReadWriteLocked
 	private void storeCollections(final Persister persister)
 	{
 		persister.storeAll(
+			this                 ,
 			this.isbn13ToBook    ,
 			this.authorToBooks   ,
 			this.genreToBooks    ,
@@ -143,14 +430,23 @@ public class Books extends ReadWriteLocked
 	 * Adds a book to all collections used by this implementation.
 	 *
 	 * @param book the book to add
+	 * @return <code>true</code> if the book replaced another one with the same ISBN
 	 */
-	private void addToCollections(final Book book)
+	private boolean addToCollections(final Book book)
 	{
-		this.isbn13ToBook.put(book.isbn13(), book);
+		book.assignId(() ->
+		{
+			final Book existing = this.isbn13ToBook.get(book.isbn13());
+			return existing != null
+				? existing.id()
+				: this.isbn13ToBook.size() + 1;
+		});
+		final Book replaced = this.isbn13ToBook.put(book.isbn13(), book);
 		this.addToMap(this.authorToBooks   , book.author()   , book);
 		this.addToMap(this.genreToBooks    , book.genre()    , book);
 		this.addToMap(this.publisherToBooks, book.publisher(), book);
 		this.addToMap(this.languageToBooks , book.language() , book);
+		return replaced != null;
 	}
 
 	/**
@@ -183,11 +479,7 @@ public class Books extends ReadWriteLocked
 	 */
 	public List<Book> all()
 	{
-		return this.read(() ->
-			this.isbn13ToBook.values().stream()
-				.sorted()
-				.collect(toList())
-		);
+		return new ArrayList<>(this.snapshot().books);
 	}
 
 	/**
@@ -198,11 +490,7 @@ public class Books extends ReadWriteLocked
 	 */
 	public List<Author> authors()
 	{
-		return this.read(() ->
-			this.authorToBooks.keySet().stream()
-				.sorted()
-				.collect(toList())
-		);
+		return new ArrayList<>(this.snapshot().authors);
 	}
 
 	/**
@@ -213,11 +501,7 @@ public class Books extends ReadWriteLocked
 	 */
 	public List<Genre> genres()
 	{
-		return this.read(() ->
-			this.genreToBooks.keySet().stream()
-				.sorted()
-				.collect(toList())
-		);
+		return new ArrayList<>(this.snapshot().genres);
 	}
 
 	/**
@@ -228,11 +512,7 @@ public class Books extends ReadWriteLocked
 	 */
 	public List<Publisher> publishers()
 	{
-		return this.read(() ->
-			this.publisherToBooks.keySet().stream()
-				.sorted()
-				.collect(toList())
-		);
+		return new ArrayList<>(this.snapshot().publishers);
 	}
 
 	/**
@@ -243,11 +523,7 @@ public class Books extends ReadWriteLocked
 	 */
 	public List<Language> languages()
 	{
-		return this.read(() ->
-			this.languageToBooks.keySet().stream()
-				.sorted()
-				.collect(toList())
-		);
+		return new ArrayList<>(this.snapshot().languages);
 	}
 
 	/**
@@ -257,9 +533,7 @@ public class Books extends ReadWriteLocked
 	 */
 	public int bookCount()
 	{
-		return this.read(
-			this.isbn13ToBook::size
-		);
+		return this.snapshot().isbn13ToBook.size();
 	}
 
 	/**
@@ -281,9 +555,7 @@ public class Books extends ReadWriteLocked
 	 */
 	public <T> T compute(final Function<Stream<Book>, T> streamFunction)
 	{
-		return this.read(() ->
-			streamFunction.apply(this.isbn13ToBook.values().stream())
-		);
+		return streamFunction.apply(this.snapshot().isbn13ToBook.values().stream());
 	}
 
 	/**
@@ -300,15 +572,12 @@ public class Books extends ReadWriteLocked
 		final Function<Stream<Book>, T> streamFunction
 	)
 	{
-		return this.read(() ->
-		{
-			final List<Book> list = this.authorToBooks.get(author);
-			return streamFunction.apply(
-				list != null
-					? list.stream()
-					: Stream.empty()
-			);
-		});
+		final List<Book> list = this.snapshot().authorToBooks.get(author);
+		return streamFunction.apply(
+			list != null
+				? list.stream()
+				: Stream.empty()
+		);
 	}
 
 	/**
@@ -325,15 +594,12 @@ public class Books extends ReadWriteLocked
 		final Function<Stream<Book>, T> streamFunction
 	)
 	{
-		return this.read(() ->
-		{
-			final List<Book> list = this.genreToBooks.get(genre);
-			return streamFunction.apply(
-				list != null
-					? list.stream()
-					: Stream.empty()
-			);
-		});
+		final List<Book> list = this.snapshot().genreToBooks.get(genre);
+		return streamFunction.apply(
+			list != null
+				? list.stream()
+				: Stream.empty()
+		);
 	}
 
 	/**
@@ -350,15 +616,12 @@ public class Books extends ReadWriteLocked
 		final Function<Stream<Book>, T> streamFunction
 	)
 	{
-		return this.read(() ->
-		{
-			final List<Book> list = this.publisherToBooks.get(publisher);
-			return streamFunction.apply(
-				list != null
-					? list.stream()
-					: Stream.empty()
-			);
-		});
+		final List<Book> list = this.snapshot().publisherToBooks.get(publisher);
+		return streamFunction.apply(
+			list != null
+				? list.stream()
+				: Stream.empty()
+		);
 	}
 
 	/**
@@ -375,15 +638,12 @@ public class Books extends ReadWriteLocked
 		final Function<Stream<Book>, T> streamFunction
 	)
 	{
-		return this.read(() ->
-		{
-			final List<Book> list = this.languageToBooks.get(language);
-			return streamFunction.apply(
-				list != null
-					? list.stream()
-					: Stream.empty()
-			);
-		});
+		final List<Book> list = this.snapshot().languageToBooks.get(language);
+		return streamFunction.apply(
+			list != null
+				? list.stream()
+				: Stream.empty()
+		);
 	}
 
 	/**
@@ -394,9 +654,7 @@ public class Books extends ReadWriteLocked
 	 */
 	public Book ofIsbn13(final String isbn13)
 	{
-		return this.read(() ->
-			this.isbn13ToBook.get(isbn13)
-		);
+		return this.snapshot().isbn13ToBook.get(isbn13);
 	}
 
 	/**
@@ -408,9 +666,7 @@ public class Books extends ReadWriteLocked
 	 */
 	public <T> T computeGenres(final Function<Stream<Genre>, T> streamFunction)
 	{
-		return this.read(() ->
-			streamFunction.apply(this.genreToBooks.keySet().stream())
-		);
+		return streamFunction.apply(this.snapshot().genreToBooks.keySet().stream());
 	}
 
 	/**
@@ -422,9 +678,7 @@ public class Books extends ReadWriteLocked
 	 */
 	public <T> T computeAuthors(final Function<Stream<Author>, T> streamFunction)
 	{
-		return this.read(() ->
-			streamFunction.apply(this.authorToBooks.keySet().stream())
-		);
+		return streamFunction.apply(this.snapshot().authorToBooks.keySet().stream());
 	}
 
 	/**
@@ -436,9 +690,7 @@ public class Books extends ReadWriteLocked
 	 */
 	public <T> T computePublishers(final Function<Stream<Publisher>, T> streamFunction)
 	{
-		return this.read(() ->
-			streamFunction.apply(this.publisherToBooks.keySet().stream())
-		);
+		return streamFunction.apply(this.snapshot().publisherToBooks.keySet().stream());
 	}
 
 	/**
@@ -450,9 +702,7 @@ public class Books extends ReadWriteLocked
 	 */
 	public <T> T computeLanguages(final Function<Stream<Language>, T> streamFunction)
 	{
-		return this.read(() ->
-			streamFunction.apply(this.languageToBooks.keySet().stream())
-		);
+		return streamFunction.apply(this.snapshot().languageToBooks.keySet().stream());
 	}
 
 	/**
@@ -463,13 +713,234 @@ public class Books extends ReadWriteLocked
 	 *
 	 * @param queryText the search query
 	 * @return a list of books matching the query, or an empty list
+	 * @see #searchByTitle(String, int, int)
 	 */
 	public List<Book> searchByTitle(final String queryText)
 	{
-		final Index<Book>  index        = this.ensureIndex();
+		return this.searchByTitle(queryText, 0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Searches all books by title with a given query and returns a page of the results, ordered by relevance.
+	 *
+	 * @param queryText the search query
+	 * @param offset the number of results to skip
+	 * @param limit the maximum number of returned results
+	 * @return a list of books matching the query, or an empty list
+	 * @see #searchByTitle(String)
+	 */
+	public List<Book> searchByTitle(
+		final String queryText,
+		final int    offset   ,
+		final int    limit
+	)
+	{
+		final Index<Book> index = this.ensureIndex();
+		if(StringUtils.isBlank(queryText) || limit == 0)
+		{
+			return new ArrayList<>();
+		}
+		if(!this.indexReady)
+		{
+			return new ArrayList<>(this.scan(
+				index,
+				new BookQuery().title(queryText).offset(offset).limit(limit)
+			).books());
+		}
+
 		final QueryBuilder queryBuilder = index.createQueryBuilder();
-		final Query        query        = queryBuilder.createPhraseQuery("title", queryText);
-		return index.search(query, Integer.MAX_VALUE);
+		final Query        query        = queryBuilder.createPhraseQuery(TITLE_FIELD, queryText);
+		return query == null
+			? new ArrayList<>()
+			: index.search(query, offset, limit);
+	}
+
+	/**
+	 * Searches the catalog with multiple criteria.
+	 * <p>
+	 * The matching books, their total amount and the facet counts (amount of matching books
+	 * per author, genre, publisher and language) are computed by the full text search index in one pass,
+	 * without scanning all books.
+	 *
+	 * @param bookQuery the search criteria
+	 * @return the found books and facet counts
+	 */
+	public BookSearchResult search(final BookQuery bookQuery)
+	{
+		final Index<Book> index = this.ensureIndex();
+		if(!this.indexReady)
+		{
+			return this.scan(index, bookQuery);
+		}
+
+		final Index.Hits<Book> hits = index.search(
+			this.createQuery(index, bookQuery),
+			bookQuery.offset(),
+			bookQuery.limit(),
+			FACET_FIELDS
+		);
+		return new BookSearchResult(
+			hits.entities(),
+			hits.totalHits(),
+			facetCounts(hits.facetCounts(AUTHOR_NAME_FIELD)),
+			facetCounts(hits.facetCounts(GENRE_NAME_FIELD)),
+			facetCounts(hits.facetCounts(PUBLISHER_NAME_FIELD)),
+			facetCounts(hits.facetCounts(LANGUAGE_NAME_FIELD))
+		);
+	}
+
+	/**
+	 * Searches by scanning all books, with the same semantics as the index.
+	 * This is used until the full text search index is in sync with the books.
+	 */
+	private BookSearchResult scan(
+		final Index<Book> index    ,
+		final BookQuery   bookQuery
+	)
+	{
+		final List<String> titleTerms = StringUtils.isBlank(bookQuery.title())
+			? null
+			: index.analyze(TITLE_FIELD, bookQuery.title());
+		final long         minCents   = bookQuery.minRetailPrice() != null
+			? BookStoreDemo.cents(bookQuery.minRetailPrice())
+			: Long.MIN_VALUE;
+		final long         maxCents   = bookQuery.maxRetailPrice() != null
+			? BookStoreDemo.cents(bookQuery.maxRetailPrice())
+			: Long.MAX_VALUE;
+
+		final List<Book>           page       = new ArrayList<>();
+		final Map<String, Integer> authors    = new HashMap<>();
+		final Map<String, Integer> genres     = new HashMap<>();
+		final Map<String, Integer> publishers = new HashMap<>();
+		final Map<String, Integer> languages  = new HashMap<>();
+		int                        totalHits  = 0;
+		if(titleTerms == null || !titleTerms.isEmpty())
+		{
+			for(final Book book : this.snapshot().books)
+			{
+				final long cents = BookStoreDemo.cents(book.retailPrice());
+				if((titleTerms == null
+						|| Collections.indexOfSubList(index.analyze(TITLE_FIELD, book.title()), titleTerms) >= 0)
+					&& matches(bookQuery.author()   , book.author().name()   )
+					&& matches(bookQuery.genre()    , book.genre().name()    )
+					&& matches(bookQuery.publisher(), book.publisher().name())
+					&& matches(bookQuery.language() , book.language().name() )
+					&& cents >= minCents
+					&& cents <= maxCents
+				)
+				{
+					if(totalHits >= bookQuery.offset() && page.size() < bookQuery.limit())
+					{
+						page.add(book);
+					}
+					totalHits++;
+					authors   .merge(book.author().name()   , 1, Integer::sum);
+					genres    .merge(book.genre().name()    , 1, Integer::sum);
+					publishers.merge(book.publisher().name(), 1, Integer::sum);
+					languages .merge(book.language().name() , 1, Integer::sum);
+				}
+			}
+		}
+
+		return new BookSearchResult(
+			page,
+			totalHits,
+			facetCounts(authors),
+			facetCounts(genres),
+			facetCounts(publishers),
+			facetCounts(languages)
+		);
+	}
+
+	private static boolean matches(
+		final String filter,
+		final String value
+	)
+	{
+		return filter == null || filter.equals(value);
+	}
+
+	private Query createQuery(
+		final Index<Book> index    ,
+		final BookQuery   bookQuery
+	)
+	{
+		final BooleanQuery.Builder builder = new BooleanQuery.Builder();
+
+		if(!StringUtils.isBlank(bookQuery.title()))
+		{
+			final Query titleQuery = index.createQueryBuilder().createPhraseQuery(TITLE_FIELD, bookQuery.title());
+			if(titleQuery == null)
+			{
+				// only stop words
+				return new MatchNoDocsQuery();
+			}
+			builder.add(titleQuery, Occur.MUST);
+		}
+
+		addFilter(builder, AUTHOR_NAME_FIELD   , bookQuery.author()   );
+		addFilter(builder, GENRE_NAME_FIELD    , bookQuery.genre()    );
+		addFilter(builder, PUBLISHER_NAME_FIELD, bookQuery.publisher());
+		addFilter(builder, LANGUAGE_NAME_FIELD , bookQuery.language() );
+
+		if(bookQuery.minRetailPrice() != null || bookQuery.maxRetailPrice() != null)
+		{
+			builder.add(
+				LongPoint.newRangeQuery(
+					RETAIL_PRICE_FIELD,
+					bookQuery.minRetailPrice() != null
+						? BookStoreDemo.cents(bookQuery.minRetailPrice())
+						: Long.MIN_VALUE,
+					bookQuery.maxRetailPrice() != null
+						? BookStoreDemo.cents(bookQuery.maxRetailPrice())
+						: Long.MAX_VALUE
+				),
+				Occur.FILTER
+			);
+		}
+
+		final BooleanQuery query = builder.build();
+		return query.clauses().isEmpty()
+			? new MatchAllDocsQuery()
+			: query;
+	}
+
+	private static void addFilter(
+		final BooleanQuery.Builder builder,
+		final String               field  ,
+		final String               value
+	)
+	{
+		if(value != null)
+		{
+			builder.add(new TermQuery(new Term(field, value)), Occur.FILTER);
+		}
+	}
+
+	private static List<FacetCount> facetCounts(final Map<String, Integer> counts)
+	{
+		return counts.entrySet().stream()
+			.map(e -> new FacetCount(e.getKey(), e.getValue()))
+			.sorted()
+			.collect(toList());
+	}
+
+	/**
+	 * Suggests book titles and author names for type-ahead.
+	 * A suggestion contains a word which starts with the given prefix, case insensitive.
+	 * <p>
+	 * The suggestions are computed in memory, without the full text search index.
+	 *
+	 * @param prefix the prefix entered so far
+	 * @param limit the maximum amount of suggestions
+	 * @return the matching titles and author names, or an empty list
+	 */
+	public List<String> suggest(
+		final String prefix,
+		final int    limit
+	)
+	{
+		return this.snapshot().suggester.suggest(prefix, limit);
 	}
 
 	/**
@@ -528,6 +999,61 @@ public class Books extends ReadWriteLocked
 		);
 	}
 
+	/**
+	 * Opens the full text search index and checks whether it is in sync with the books.
+	 * If not, it is rebuilt in the background and searches scan all books meanwhile.
+	 * <p>
+	 * This is done on demand as well, calling it at startup just saves the first search from opening the index.
+	 */
+	public void openIndex()
+	{
+		this.ensureIndex();
+	}
+
+	/**
+	 * Closes the full text search index, pending changes are committed before.
+	 * It is reopened on demand.
+	 */
+	public void closeIndex()
+	{
+		final Index<Book> index = this.index;
+		if(index != null)
+		{
+			try
+			{
+				index.close();
+			}
+			catch(final IOException e)
+			{
+				throw new IORuntimeException(e);
+			}
+		}
+	}
+
+	/**
+	 * Lazy initializes the snapshot used by the read operations.
+	 */
+	private Snapshot snapshot()
+	{
+		/*
+		 * The snapshot is created under the write lock, so it can't miss a concurrent modification.
+		 * The field (this.snapshot) has to be volatile.
+		 */
+		Snapshot snapshot = this.snapshot;
+		if(snapshot == null)
+		{
+			snapshot = this.write(() ->
+			{
+				if(this.snapshot == null)
+				{
+					this.snapshot = new Snapshot(this);
+				}
+				return this.snapshot;
+			});
+		}
+		return snapshot;
+	}
+
 	/**
 	 * Lazy initializes the full text search index.
 	 */
@@ -541,11 +1067,17 @@ public class Books extends ReadWriteLocked
 		Index<Book> index = this.index;
 		if(index == null)
 		{
+			/*
+			 * The snapshot is created before the monitor is acquired, since that may need the write lock,
+			 * whereas writers call this method while holding the write lock.
+			 * No books can be added until the index exists, so the snapshot can't become outdated meanwhile.
+			 */
+			final Snapshot snapshot = this.snapshot();
 			synchronized(this)
 			{
 				if((index = this.index) == null)
 				{
-					index = this.index = this.createIndex();
+					index = this.index = this.createIndex(snapshot);
 				}
 			}
 		}
@@ -554,33 +1086,112 @@ public class Books extends ReadWriteLocked
 
 	/**
 	 * Creates a Lucene index used for full text search.
+	 *
+	 * @param snapshot the current snapshot, to check whether the index is in sync
 	 */
-	private Index<Book> createIndex()
+	private Index<Book> createIndex(final Snapshot snapshot)
 	{
+		/*
+		 * Hits are resolved by the books' ids, so no fields have to be stored.
+		 */
 		final DocumentPopulator<Book> documentPopulator = (document, book) -> {
-			document.add(new StringField("isbn13", book.isbn13(), Store.YES));
-			document.add(new TextField("title", book.title(), Store.YES));
-			document.add(new TextField("author", book.author().name(), Store.YES));
-			document.add(new TextField("genre", book.genre().name(), Store.YES));
-			document.add(new TextField("publisher", book.publisher().name(), Store.YES));
+			document.add(new StringField("isbn13", book.isbn13(), Store.NO));
+			document.add(new TextField(TITLE_FIELD, book.title(), Store.NO));
+			document.add(new TextField("author", book.author().name(), Store.NO));
+			document.add(new TextField("genre", book.genre().name(), Store.NO));
+			document.add(new TextField("publisher", book.publisher().name(), Store.NO));
+			addFacetField(document, AUTHOR_NAME_FIELD   , book.author().name()   );
+			addFacetField(document, GENRE_NAME_FIELD    , book.genre().name()    );
+			addFacetField(document, PUBLISHER_NAME_FIELD, book.publisher().name());
+			addFacetField(document, LANGUAGE_NAME_FIELD , book.language().name() );
+			document.add(new LongPoint(RETAIL_PRICE_FIELD, BookStoreDemo.cents(book.retailPrice())));
 		};
 
-		final EntityMatcher<Book> entityMatcher = document ->
-			this.isbn13ToBook.get(document.get("isbn13"))
-		;
+		final EntityMatcher<Book> entityMatcher = id ->
+		{
+			final Book[] idToBook = this.snapshot().idToBook;
+			return id < idToBook.length
+				? idToBook[id]
+				: null;
+		};
 
 		final Index<Book> index = new Index<>(
 			Book.class,
+			BookStoreDemo.getInstance().dataDirectory().resolve("index"),
+			Book::id,
 			documentPopulator,
 			entityMatcher
 		);
 
-		if(index.size() == 0 && this.bookCount() > 0)
+		if(this.isInSync(index, snapshot))
 		{
-			index.addAll(this.isbn13ToBook.values());
+			this.indexReady = true;
+		}
+		else
+		{
+			final Thread rebuilder = new Thread(
+				() -> this.rebuildIndex(index),
+				"Indexer-Book-Rebuild"
+			);
+			rebuilder.setDaemon(true);
+			rebuilder.start();
 		}
 
 		return index;
 	}
 
+	/**
+	 * Checks if the index reflects the current version of the books,
+	 * it may be outdated after a crash, or if it was created by a previous version of this class.
+	 * The index has to contain exactly one document per book.
+	 */
+	private boolean isInSync(
+		final Index<Book> index   ,
+		final Snapshot    snapshot
+	)
+	{
+		return index.version() == snapshot.version
+			&& index.size() == snapshot.isbn13ToBook.size()
+			&& index.sizeWithoutIds() == 0
+			&& index.count(LongPoint.newRangeQuery(RETAIL_PRICE_FIELD, Long.MIN_VALUE, Long.MAX_VALUE)) == index.size()
+		;
+	}
+
+	/**
+	 * Replaces all entries of the index with the current books.
+	 * The read lock ensures that no books are added meanwhile,
+	 * additions afterwards are queued after the rebuild.
+	 */
+	private void rebuildIndex(final Index<Book> index)
+	{
+		try
+		{
+			this.logger().info("Rebuilding book index");
+
+			this.read(() ->
+			{
+				final Snapshot snapshot = this.snapshot;
+				index.rebuild(snapshot.isbn13ToBook.values(), snapshot.version);
+			});
+			index.flush();
+			this.indexReady = true;
+
+			this.logger().info("Book index rebuilt");
+		}
+		catch(final RuntimeException e)
+		{
+			this.logger().severe("Error rebuilding book index", e);
+		}
+	}
+
+	private static void addFacetField(
+		final Document document,
+		final String   field   ,
+		final String   value
+	)
+	{
+		document.add(new StringField(field, value, Store.NO));
+		document.add(new SortedDocValuesField(field, new BytesRef(value)));
+	}
+
 }
@@ -1,12 +1,13 @@
 package one.microstream.demo.bookstore.data;
 
+import static java.util.stream.Collectors.toList;
+
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import one.microstream.demo.bookstore.BookStoreDemo;
@@ -31,9 +32,15 @@ public class Customers extends ReadWriteLocked
 	 */
 	private final Map<Integer, Customer> customers = new HashMap<>();
 
-	public Customers()
+	/**
+	 * Registry of the customers' countries, states and cities.
+	 */
+	private final Geography              geography;
+
+	public Customers(final Geography geography)
 	{
 		super();
+		this.geography = geography;
 	}
 	
 	/**
@@ -61,8 +68,11 @@ public class Customers extends ReadWriteLocked
 	)
 	{
 		this.write(() -> {
-			this.customers.put(customer.customerId(), customer);
-			persister.store(this.customers);
+			final List<Object> changedObjects = new ArrayList<>();
+			this.geography.addAll(List.of(customer.address().city()), persister);
+			this.addCustomer(customer, changedObjects);
+			changedObjects.add(this.customers);
+			persister.storeAll(changedObjects);
 		});
 	}
 
@@ -91,15 +101,46 @@ public class Customers extends ReadWriteLocked
 	)
 	{
 		this.write(() -> {
-			this.customers.putAll(
-				customers.stream().collect(
-					Collectors.toMap(Customer::customerId, Function.identity())
-				)
+			final List<Object> changedObjects = new ArrayList<>();
+			this.geography.addAll(
+				customers.stream().map(customer -> customer.address().city()).collect(toList()),
+				persister
 			);
-			persister.store(this.customers);
+			customers.forEach(customer -> this.addCustomer(customer, changedObjects));
+			changedObjects.add(this.customers);
+			persister.storeAll(changedObjects);
 		});
 	}
 
+	/**
+	 * Adds a customer to the map and assigns its id.
+	 * The customer's city has to be registered in the {@link Geography} already.
+	 * A customer replacing another one with the same customer id takes over its id.
+	 * <p>
+	 * Customers may already be stored as part of a {@link Purchase},
+	 * so the ones which got an id have to be stored again.
+	 *
+	 * @param customer the customer to add
+	 * @param changedObjects collector for the customers which got an id
+	 */
+	private void addCustomer(
+		final Customer     customer      ,
+		final List<Object> changedObjects
+	)
+	{
+		if(customer.assignId(() ->
+		{
+			final Customer existing = this.customers.get(customer.customerId());
+			return existing != null
+				? existing.id()
+				: this.customers.size() + 1;
+		}))
+		{
+			changedObjects.add(customer);
+		}
+		this.customers.put(customer.customerId(), customer);
+	}
+
 	/**
 	 * Gets the total amount of all customers.
 	 *
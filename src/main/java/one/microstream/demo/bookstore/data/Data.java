@@ -9,8 +9,9 @@ import one.microstream.storage.embedded.types.EmbeddedStorageManager;
  * <p>
  * This is the entry point for the persisted object graph.
  * <p>
- * The data is divided into four sections:
+ * The data is divided into five sections:
  * <ul>
+ * <li>{@link Geography}</li>
  * <li>{@link Books}</li>
  * <li>{@link Shops}</li>
  * <li>{@link Customers}</li>
@@ -21,15 +22,25 @@ import one.microstream.storage.embedded.types.EmbeddedStorageManager;
  */
 public class Data
 {
+	private final Geography geography = new Geography();
 	private final Books     books     = new Books    ();
-	private final Shops     shops     = new Shops    ();
-	private final Customers customers = new Customers();
+	private final Shops     shops     = new Shops    (this.geography);
+	private final Customers customers = new Customers(this.geography);
 	private final Purchases purchases = new Purchases();
 
 	public Data()
 	{
 		super();
 	}
+
+	/**
+	 * Get the {@link Geography} instance of this data node.
+	 * @return the {@link Geography}
+	 */
+	public Geography geography()
+	{
+		return this.geography;
+	}
 	
 	/**
 	 * Get the {@link Books} instance of this data node.
@@ -72,15 +83,18 @@ public class Data
 	 */
 	public DataMetrics populate(
 		final RandomDataAmount       initialDataSize,
+		final long                   randomSeed     ,
 		final EmbeddedStorageManager storageManager
 	)
 	{
 		return new RandomDataGenerator(
+			this.geography,
 			this.books,
 			this.shops,
 			this.customers,
 			this.purchases,
 			initialDataSize,
+			randomSeed,
 			storageManager
 		)
 		.generate();
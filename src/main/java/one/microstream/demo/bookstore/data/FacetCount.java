@@ -0,0 +1,77 @@
+package one.microstream.demo.bookstore.data;
+
+import static one.microstream.demo.bookstore.util.ValidationUtils.requireZeroOrPositive;
+
+import java.util.Objects;
+
+/**
+ * Amount of search hits with a specific facet value, e.g. the name of an {@link Author}.
+ * <p>
+ * This type is immutable and therefor inherently thread safe.
+ *
+ * @see BookSearchResult
+ */
+public class FacetCount implements Comparable<FacetCount>
+{
+	private final String value;
+	private final int    count;
+
+	/**
+	 * Constructor to create a new {@link FacetCount} instance.
+	 *
+	 * @param value not <code>null</code>
+	 * @param count zero or positive
+	 */
+	public FacetCount(
+		final String value,
+		final int    count
+	)
+	{
+		super();
+
+		this.value = Objects.requireNonNull(value, () -> "Value cannot be null");
+		this.count = requireZeroOrPositive(count, () -> "Count cannot be negative");
+	}
+
+	/**
+	 * Get the facet value
+	 *
+	 * @return the value
+	 */
+	public String value()
+	{
+		return this.value;
+	}
+
+	/**
+	 * Get the amount of hits with this value
+	 *
+	 * @return the count
+	 */
+	public int count()
+	{
+		return this.count;
+	}
+
+	/**
+	 * Orders by count descending, then by value.
+	 */
+	@Override
+	public int compareTo(final FacetCount other)
+	{
+		final int result = Integer.compare(other.count, this.count);
+		return result != 0
+			? result
+			: this.value.compareTo(other.value);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "FacetCount"
+			+ " [value=" + this.value
+			+ ", count=" + this.count
+			+ "]";
+	}
+
+}
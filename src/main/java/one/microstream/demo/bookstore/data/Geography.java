@@ -0,0 +1,357 @@
+package one.microstream.demo.bookstore.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import one.microstream.demo.bookstore.BookStoreDemo;
+import one.microstream.demo.bookstore.util.concurrent.ReadWriteLocked;
+import one.microstream.persistence.types.Persister;
+import one.microstream.storage.embedded.types.EmbeddedStorageManager;
+
+/**
+ * Registry of all {@link Country}s, {@link State}s and {@link City}s.
+ * <p>
+ * Every country, state and city is registered once, with its canonical instance,
+ * and gets a dense id, starting with 1, in the order of registration.
+ * The tables are lists indexed by id, so lookups by id are array lookups,
+ * e.g. the cities of shops and customers are compared by their ids.
+ * The states of every country and the cities of every state are held as child lists.
+ * <p>
+ * All operations on this type are thread safe.
+ *
+ * @see Data#geography()
+ * @see ReadWriteLocked
+ */
+public class Geography extends ReadWriteLocked
+{
+	/*
+	 * Tables, indexed by id - 1.
+	 */
+	private final List<Country>        countries     = new ArrayList<>();
+	private final List<State>          states        = new ArrayList<>();
+	private final List<City>           cities        = new ArrayList<>();
+
+	/*
+	 * Child lists, indexed by the id - 1 of the parent.
+	 */
+	private final List<List<State>>    countryStates = new ArrayList<>();
+	private final List<List<City>>     stateCities   = new ArrayList<>();
+
+	private final Map<String, Country> codeToCountry = new HashMap<>();
+
+	public Geography()
+	{
+		super();
+	}
+
+	/**
+	 * Registers cities and stores the changes with the {@link BookStoreDemo}'s {@link EmbeddedStorageManager}.
+	 * <p>
+	 * This is a synonym for:<pre>this.addAll(cities, BookStoreDemo.getInstance().storageManager())</pre>
+	 *
+	 * @param cities the cities to register
+	 */
+	public void addAll(final Collection<City> cities)
+	{
+		this.addAll(cities, BookStoreDemo.getInstance().storageManager());
+	}
+
+	/**
+	 * Registers cities, with their states and countries, and stores the changes with the given persister.
+	 * Already registered cities are skipped.
+	 *
+	 * @param cities the cities to register
+	 * @param persister the persister to store the changes with
+	 * @throws IllegalArgumentException if another instance of a city, state or country is registered already
+	 */
+	public void addAll(
+		final Collection<City> cities   ,
+		final Persister        persister
+	)
+	{
+		final boolean registered = this.read(() ->
+			cities.stream().allMatch(this::isRegistered)
+		);
+		if(registered)
+		{
+			return;
+		}
+
+		this.write(() ->
+		{
+			final Set<Object> changedObjects = Collections.newSetFromMap(new IdentityHashMap<>());
+			cities.forEach(city -> this.addCity(city, changedObjects));
+			if(!changedObjects.isEmpty())
+			{
+				persister.storeAll(changedObjects);
+			}
+		});
+	}
+
+	private boolean isRegistered(final City city)
+	{
+		return isRegistered(this.cities, city);
+	}
+
+	private static <T extends Named> boolean isRegistered(
+		final List<T> table ,
+		final T       entity
+	)
+	{
+		final int id = entity.id();
+		return id > 0
+			&& id <= table.size()
+			&& table.get(id - 1) == entity;
+	}
+
+	private void addCity(
+		final City        city          ,
+		final Set<Object> changedObjects
+	)
+	{
+		if(this.isRegistered(city))
+		{
+			return;
+		}
+
+		final State      state    = city.state();
+		this.addState(state, changedObjects);
+		final List<City> siblings = this.stateCities.get(state.id() - 1);
+		requireUnique(siblings, city);
+		register(this.cities, city, changedObjects);
+		siblings.add(city);
+		changedObjects.add(siblings);
+	}
+
+	private void addState(
+		final State       state         ,
+		final Set<Object> changedObjects
+	)
+	{
+		if(isRegistered(this.states, state))
+		{
+			return;
+		}
+
+		final Country     country  = state.country();
+		this.addCountry(country, changedObjects);
+		final List<State> siblings = this.countryStates.get(country.id() - 1);
+		requireUnique(siblings, state);
+		register(this.states, state, changedObjects);
+		this.stateCities.add(new ArrayList<>());
+		siblings.add(state);
+		changedObjects.add(siblings);
+		changedObjects.add(this.stateCities);
+	}
+
+	private void addCountry(
+		final Country     country       ,
+		final Set<Object> changedObjects
+	)
+	{
+		if(isRegistered(this.countries, country))
+		{
+			return;
+		}
+
+		final String code = normalizeCode(country.code());
+		if(this.codeToCountry.containsKey(code))
+		{
+			throw new IllegalArgumentException("Country already registered: " + country.code());
+		}
+		register(this.countries, country, changedObjects);
+		this.countryStates.add(new ArrayList<>());
+		this.codeToCountry.put(code, country);
+		changedObjects.add(this.countryStates);
+		changedObjects.add(this.codeToCountry);
+	}
+
+	private static <T extends Named> void requireUnique(
+		final List<T> siblings,
+		final T       entity
+	)
+	{
+		if(siblings.stream().anyMatch(sibling -> sibling.name().equals(entity.name())))
+		{
+			throw new IllegalArgumentException(
+				entity.getClass().getSimpleName() + " already registered: " + entity.name()
+			);
+		}
+	}
+
+	/**
+	 * Assigns the id of an entity and adds it to its table.
+	 */
+	private static <T extends Named> void register(
+		final List<T>     table         ,
+		final T           entity        ,
+		final Set<Object> changedObjects
+	)
+	{
+		if(!entity.assignId(() -> table.size() + 1) && entity.id() != table.size() + 1)
+		{
+			throw new IllegalArgumentException(
+				entity.getClass().getSimpleName() + " already has another id: " + entity.name()
+			);
+		}
+		table.add(entity);
+		changedObjects.add(entity);
+		changedObjects.add(table);
+	}
+
+	private static String normalizeCode(final String code)
+	{
+		return code.toUpperCase(Locale.ROOT);
+	}
+
+	/**
+	 * Gets all countries, ordered by id.
+	 * Modifications to the returned list are not reflected to the backed data.
+	 *
+	 * @return all countries
+	 */
+	public List<Country> countries()
+	{
+		return this.read(() ->
+			new ArrayList<>(this.countries)
+		);
+	}
+
+	/**
+	 * Gets the country with a specific id, or <code>null</code> if none was found.
+	 *
+	 * @param id the id to search by
+	 * @return the matching country or <code>null</code>
+	 */
+	public Country country(final int id)
+	{
+		return this.read(() ->
+			byId(this.countries, id)
+		);
+	}
+
+	/**
+	 * Gets the state with a specific id, or <code>null</code> if none was found.
+	 *
+	 * @param id the id to search by
+	 * @return the matching state or <code>null</code>
+	 */
+	public State state(final int id)
+	{
+		return this.read(() ->
+			byId(this.states, id)
+		);
+	}
+
+	/**
+	 * Gets the city with a specific id, or <code>null</code> if none was found.
+	 *
+	 * @param id the id to search by
+	 * @return the matching city or <code>null</code>
+	 */
+	public City city(final int id)
+	{
+		return this.read(() ->
+			byId(this.cities, id)
+		);
+	}
+
+	private static <T> T byId(
+		final List<T> table,
+		final int     id
+	)
+	{
+		return id > 0 && id <= table.size()
+			? table.get(id - 1)
+			: null;
+	}
+
+	/**
+	 * Gets the country with a specific code, case insensitive, or <code>null</code> if none was found.
+	 *
+	 * @param code the country code to search by
+	 * @return the matching country or <code>null</code>
+	 */
+	public Country countryOfCode(final String code)
+	{
+		return code == null
+			? null
+			: this.read(() ->
+				this.codeToCountry.get(normalizeCode(code))
+			);
+	}
+
+	/**
+	 * Gets all states of a country.
+	 * Modifications to the returned list are not reflected to the backed data.
+	 *
+	 * @param country the country
+	 * @return the states of the country
+	 */
+	public List<State> states(final Country country)
+	{
+		return this.read(() ->
+			isRegistered(this.countries, country)
+				? new ArrayList<>(this.countryStates.get(country.id() - 1))
+				: new ArrayList<>()
+		);
+	}
+
+	/**
+	 * Gets all cities of a state.
+	 * Modifications to the returned list are not reflected to the backed data.
+	 *
+	 * @param state the state
+	 * @return the cities of the state
+	 */
+	public List<City> cities(final State state)
+	{
+		return this.read(() ->
+			isRegistered(this.states, state)
+				? new ArrayList<>(this.stateCities.get(state.id() - 1))
+				: new ArrayList<>()
+		);
+	}
+
+	/**
+	 * Gets all cities of a country.
+	 * Modifications to the returned list are not reflected to the backed data.
+	 *
+	 * @param country the country
+	 * @return the cities of the country
+	 */
+	public List<City> cities(final Country country)
+	{
+		return this.read(() ->
+		{
+			final List<City> cities = new ArrayList<>();
+			if(isRegistered(this.countries, country))
+			{
+				this.countryStates.get(country.id() - 1).forEach(state ->
+					cities.addAll(this.stateCities.get(state.id() - 1))
+				);
+			}
+			return cities;
+		});
+	}
+
+	/**
+	 * Gets the total amount of all registered cities.
+	 *
+	 * @return the amount of cities
+	 */
+	public int cityCount()
+	{
+		return this.read(
+			this.cities::size
+		);
+	}
+
+}
@@ -0,0 +1,146 @@
+package one.microstream.demo.bookstore.data;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import one.microstream.demo.bookstore.util.concurrent.ReadWriteLocked;
+import one.microstream.persistence.types.Persister;
+
+/**
+ * Stores the changes of concurrent writers together, with as few store operations as possible.
+ * <p>
+ * Writers modify objects under the read lock, which is shared by all writers,
+ * see {@link #modifyAndStore(BiConsumer, Persister)}. They still have to guard the objects against each other.
+ * Then the first writer stores the changes of all writers which are waiting meanwhile with a single store operation,
+ * the other ones return as soon as a store operation which contains their changes is complete.
+ * <p>
+ * The changes are stored under the write lock, so no object is modified while it is stored,
+ * and an older state of an object never overwrites a newer one.
+ * Only the writers wait for the storage, readers of the modified objects aren't affected.
+ * <p>
+ * If a modification fails or the changes can't be stored, all modifications of the batch are reverted,
+ * see {@link Rollback}, and all of its writers fail. Since every writer joins the batch before it releases the read lock,
+ * a batch contains all modifications since the last store, which can be reverted in reverse order.
+ * <p>
+ * All operations on this type are thread safe.
+ */
+class GroupCommit extends ReadWriteLocked
+{
+	/**
+	 * The changes of all writers which are stored with the same store operation.
+	 */
+	private static class Batch
+	{
+		final Set<Object> changedObjects = Collections.newSetFromMap(new IdentityHashMap<>());
+		final Rollback    rollback       = new Rollback();
+		boolean           stored ;
+		RuntimeException  failure;
+
+		Batch()
+		{
+			super();
+		}
+	}
+
+
+	/*
+	 * The open batches, one per persister. Guarded by the monitor of the map.
+	 * A batch is only taken out of the map under the write lock.
+	 */
+	private final Map<Persister, Batch> batches = new IdentityHashMap<>();
+
+	GroupCommit()
+	{
+		super();
+	}
+
+	/**
+	 * Executes a modification under the read lock and stores the changed objects,
+	 * together with the changes of concurrent writers. Returns when the changes are stored.
+	 *
+	 * @param modification the modification, which collects the objects which have to be stored
+	 * and records how to revert itself
+	 * @param persister the persister to store the changes with
+	 * @throws IllegalStateException if the modification failed or the changes could not be stored,
+	 * then the modification is reverted
+	 */
+	void modifyAndStore(
+		final BiConsumer<Collection<Object>, Rollback> modification,
+		final Persister                                persister
+	)
+	{
+		final Batch batch = this.read(() ->
+		{
+			final Batch openBatch;
+			synchronized(this.batches)
+			{
+				openBatch = this.batches.computeIfAbsent(persister, p -> new Batch());
+			}
+			final Set<Object> changedObjects = Collections.newSetFromMap(new IdentityHashMap<>());
+			try
+			{
+				modification.accept(changedObjects, openBatch.rollback);
+			}
+			catch(final RuntimeException e)
+			{
+				/*
+				 * The partial modification can't be reverted on its own,
+				 * since other writers may have modified the same objects afterwards.
+				 */
+				synchronized(this.batches)
+				{
+					if(openBatch.failure == null)
+					{
+						openBatch.failure = e;
+					}
+				}
+			}
+			synchronized(this.batches)
+			{
+				openBatch.changedObjects.addAll(changedObjects);
+			}
+			return openBatch;
+		});
+
+		this.write(() ->
+		{
+			if(batch.stored)
+			{
+				return;
+			}
+			/*
+			 * Later writers open a new batch, which is stored after this one.
+			 */
+			synchronized(this.batches)
+			{
+				this.batches.remove(persister);
+			}
+			if(batch.failure == null)
+			{
+				try
+				{
+					persister.storeAll(batch.changedObjects);
+				}
+				catch(final RuntimeException e)
+				{
+					batch.failure = e;
+				}
+			}
+			if(batch.failure != null)
+			{
+				batch.rollback.revert();
+			}
+			batch.stored = true;
+		});
+
+		if(batch.failure != null)
+		{
+			throw new IllegalStateException("Changes could not be stored", batch.failure);
+		}
+	}
+
+}
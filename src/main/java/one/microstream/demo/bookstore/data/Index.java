@@ -1,40 +1,89 @@
 
 package one.microstream.demo.bookstore.data;
 
+import static java.util.stream.Collectors.toList;
+
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
-import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+import com.google.common.base.Throwables;
 
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader.CacheHelper;
+import org.apache.lucene.index.IndexReader.CacheKey;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MultiCollector;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.TopScoreDocCollector;
 import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.QueryBuilder;
+import org.rapidpm.dependencies.core.logger.HasLogger;
 
+import one.microstream.demo.bookstore.util.concurrent.ReadWriteLocked;
 import one.microstream.exceptions.IORuntimeException;
 
 /**
  * Lucene based full text search index for Java objects.
  * <p>
+ * Changes are queued and applied asynchronously by an indexer thread, in batches.
+ * After each batch the searchers are refreshed, so changes are visible to searches within
+ * the maximum refresh delay (near-real-time). The changes are committed to the index files
+ * periodically and when the index is closed.
+ * <p>
+ * Every document carries the id of its Java object in a doc values field,
+ * hits are resolved with the ids instead of loading stored fields.
+ * The ids of a segment are read once and cached, as long as the segment is open.
+ * <p>
+ * The index carries a version of the indexed data in its commits, see {@link #setVersion(long)}.
+ * So an index which is not in sync with its data, e.g. after a crash, can be detected and rebuilt.
+ * <p>
  * All operations on this type are thread safe.
+ * Searches only hold the read lock and acquire their own searcher, so they run concurrently.
+ * Only opening and closing the index require the write lock.
  *
  * @param <T> the object type
  * @see Books.Default#searchByTitle(String)
  */
-public class Index<T> implements Closeable
+public class Index<T> extends ReadWriteLocked implements Closeable, HasLogger
 {
 	/**
 	 * External handler to populate index documents based on Java objects
@@ -47,134 +96,499 @@ public class Index<T> implements Closeable
 	}
 
 	/**
-	 * External handler which matches Java objects to index documents.
+	 * External handler which provides the ids of Java objects, which have to be greater than 0.
+	 *
+	 * @param <T> the object type
+	 */
+	public static interface EntityIdentifier<T> extends ToIntFunction<T>
+	{
+		// simple typing interface
+	}
+
+	/**
+	 * External handler which matches Java objects to the ids of index documents.
 	 *
 	 * @param <T> the object type
 	 */
-	public static interface EntityMatcher<T> extends Function<Document, T>
+	public static interface EntityMatcher<T> extends IntFunction<T>
 	{
 		// simple typing interface
 	}
+
+	/**
+	 * Result of a faceted search: a page of the found objects, the total amount of hits
+	 * and the amount of hits per value of the facet fields.
+	 * <p>
+	 * This type is immutable and therefor inherently thread safe.
+	 *
+	 * @param <T> the object type
+	 * @see Index#search(Query, int, int, String...)
+	 */
+	public static class Hits<T>
+	{
+		private final List<T>                           entities   ;
+		private final int                               totalHits  ;
+		private final Map<String, Map<String, Integer>> facetCounts;
+
+		Hits(
+			final List<T>                           entities   ,
+			final int                               totalHits  ,
+			final Map<String, Map<String, Integer>> facetCounts
+		)
+		{
+			super();
+			this.entities    = Collections.unmodifiableList(entities);
+			this.totalHits   = totalHits;
+			this.facetCounts = Map.copyOf(facetCounts);
+		}
+
+		/**
+		 * Get the requested page of the found objects, ordered by relevance.
+		 *
+		 * @return the found objects
+		 */
+		public List<T> entities()
+		{
+			return this.entities;
+		}
+
+		/**
+		 * Get the total amount of hits, regardless of the requested page.
+		 *
+		 * @return the amount of hits
+		 */
+		public int totalHits()
+		{
+			return this.totalHits;
+		}
+
+		/**
+		 * Get the amount of hits per value of a facet field.
+		 *
+		 * @param field the facet field
+		 * @return the amount of hits per value, values without hits are omitted
+		 */
+		public Map<String, Integer> facetCounts(final String field)
+		{
+			return this.facetCounts.getOrDefault(field, Map.of());
+		}
+	}
 	
 	
-	private final Class<T>             entityType       ;
-	private final DocumentPopulator<T> documentPopulator;
-	private final EntityMatcher<T>     entityMatcher    ;
-	private MMapDirectory              directory        ;
-	private IndexWriter                writer           ;
-	private DirectoryReader            reader           ;
-	private IndexSearcher              searcher         ;
+	/**
+	 * Write operation, which is executed by the indexer thread.
+	 */
+	@FunctionalInterface
+	private static interface Operation
+	{
+		public void execute(IndexWriter writer) throws IOException;
+	}
 
 	/**
-	 * Constructor to create a new {@link Index}.
+	 * Operation on an open index, executed under the read lock.
+	 */
+	@FunctionalInterface
+	private static interface StateOperation<R>
+	{
+		public R execute(State state) throws IOException;
+	}
+
+	/**
+	 * The resources of an open index.
+	 */
+	private static class State
+	{
+		final MMapDirectory   directory      ;
+		final IndexWriter     writer         ;
+		final SearcherManager searcherManager;
+		final Thread          indexer        ;
+
+		State(
+			final MMapDirectory   directory      ,
+			final IndexWriter     writer         ,
+			final SearcherManager searcherManager,
+			final Thread          indexer
+		)
+		{
+			super();
+			this.directory       = directory      ;
+			this.writer          = writer         ;
+			this.searcherManager = searcherManager;
+			this.indexer         = indexer        ;
+		}
+	}
+
+	/**
+	 * Operation which is completed when all operations queued before it are visible to searches.
+	 */
+	private static class Barrier implements Operation
+	{
+		final CompletableFuture<Void> future = new CompletableFuture<>();
+
+		Barrier()
+		{
+			super();
+		}
+
+		@Override
+		public void execute(final IndexWriter writer)
+		{
+			// no-op, completed after the refresh
+		}
+	}
+
+	/**
+	 * Counts all hits and the hits per value of {@link SortedDocValuesField}s.
+	 * The values are counted by their ordinals per segment, and only resolved once per segment.
+	 */
+	private static class FacetCollector extends SimpleCollector
+	{
+		final String[]                          fields   ;
+		final Map<String, Map<String, Integer>> counts   = new HashMap<>();
+		int                                     totalHits;
+		SortedDocValues[]                       segmentValues;
+		int[][]                                 segmentCounts;
+
+		FacetCollector(final String[] fields)
+		{
+			super();
+			this.fields = fields;
+		}
+
+		@Override
+		protected void doSetNextReader(final LeafReaderContext context) throws IOException
+		{
+			this.finishSegment();
+			this.segmentValues = new SortedDocValues[this.fields.length];
+			this.segmentCounts = new int[this.fields.length][];
+			for(int i = 0; i < this.fields.length; i++)
+			{
+				this.segmentValues[i] = DocValues.getSorted(context.reader(), this.fields[i]);
+				this.segmentCounts[i] = new int[this.segmentValues[i].getValueCount()];
+			}
+		}
+
+		@Override
+		public void collect(final int doc) throws IOException
+		{
+			this.totalHits++;
+			for(int i = 0; i < this.segmentValues.length; i++)
+			{
+				if(this.segmentValues[i].advanceExact(doc))
+				{
+					this.segmentCounts[i][this.segmentValues[i].ordValue()]++;
+				}
+			}
+		}
+
+		@Override
+		public ScoreMode scoreMode()
+		{
+			return ScoreMode.COMPLETE_NO_SCORES;
+		}
+
+		/**
+		 * Adds the counts of the current segment to the totals, has to be called after the search as well.
+		 */
+		void finishSegment() throws IOException
+		{
+			if(this.segmentValues == null)
+			{
+				return;
+			}
+			for(int i = 0; i < this.fields.length; i++)
+			{
+				final Map<String, Integer> fieldCounts = this.counts.computeIfAbsent(this.fields[i], field -> new HashMap<>());
+				final int[]                ordCounts   = this.segmentCounts[i];
+				for(int ord = 0; ord < ordCounts.length; ord++)
+				{
+					if(ordCounts[ord] > 0)
+					{
+						fieldCounts.merge(
+							this.segmentValues[i].lookupOrd(ord).utf8ToString(),
+							ordCounts[ord],
+							Integer::sum
+						);
+					}
+				}
+			}
+			this.segmentValues = null;
+			this.segmentCounts = null;
+		}
+	}
+
+
+	/**
+	 * Default maximum time until added documents are visible to searches.
+	 */
+	public final static Duration    DEFAULT_MAX_REFRESH_DELAY = Duration.ofMillis(100);
+
+	/**
+	 * Default interval of the commits to the index files.
+	 */
+	public final static Duration    DEFAULT_COMMIT_INTERVAL   = Duration.ofSeconds(10);
+
+	private final static int        MAX_BATCH_SIZE            = 10_000;
+
+	private final static Operation  STOP                      = writer -> {};
+
+	private final static Object     CLOSED                    = new Object();
+
+	/**
+	 * Doc values field which contains the id of the Java object.
+	 */
+	private final static String     ID_FIELD                  = "_id";
+
+	/**
+	 * Key of the data version in the commit user data.
+	 */
+	private final static String     VERSION_KEY               = "version";
+
+	private final Class<T>                 entityType          ;
+	private final Path                     path                ;
+	private final EntityIdentifier<T>      entityIdentifier    ;
+	private final DocumentPopulator<T>     documentPopulator   ;
+	private final EntityMatcher<T>         entityMatcher       ;
+	private final long                     maxRefreshDelayNanos;
+	private final long                     commitIntervalNanos ;
+	private final BlockingQueue<Operation> queue               = new LinkedBlockingQueue<>();
+	private final Analyzer                 analyzer            = new StandardAnalyzer();
+	/*
+	 * Ids of the documents per segment, indexed by the segment's document numbers, 0 means no id.
+	 */
+	private final Map<CacheKey, int[]>     segmentIds          = new ConcurrentHashMap<>();
+	private volatile State                 state               ;
+
+	/**
+	 * Constructor to create a new {@link Index} with the default refresh delay and commit interval.
 	 *
 	 * @param <T> the object type
 	 * @param entityType not <code>null</code>
+	 * @param directory the parent directory of the index files, not <code>null</code>
+	 * @param entityIdentifier not <code>null</code>
 	 * @param documentPopulator not <code>null</code>
 	 * @param entityMatcher not <code>null</code>
 	 */
 	public Index(
 		final Class<T>             entityType       ,
+		final Path                 directory        ,
+		final EntityIdentifier<T>  entityIdentifier ,
 		final DocumentPopulator<T> documentPopulator,
 		final EntityMatcher<T>     entityMatcher
 	)
+	{
+		this(
+			entityType,
+			directory,
+			entityIdentifier,
+			documentPopulator,
+			entityMatcher,
+			DEFAULT_MAX_REFRESH_DELAY,
+			DEFAULT_COMMIT_INTERVAL
+		);
+	}
+
+	/**
+	 * Constructor to create a new {@link Index}.
+	 *
+	 * @param <T> the object type
+	 * @param entityType not <code>null</code>
+	 * @param directory the parent directory of the index files, not <code>null</code>
+	 * @param entityIdentifier not <code>null</code>
+	 * @param documentPopulator not <code>null</code>
+	 * @param entityMatcher not <code>null</code>
+	 * @param maxRefreshDelay the maximum time until changes are visible to searches, not <code>null</code>
+	 * @param commitInterval the interval in which changes are committed to the index files, not <code>null</code>
+	 */
+	public Index(
+		final Class<T>             entityType       ,
+		final Path                 directory        ,
+		final EntityIdentifier<T>  entityIdentifier ,
+		final DocumentPopulator<T> documentPopulator,
+		final EntityMatcher<T>     entityMatcher    ,
+		final Duration             maxRefreshDelay  ,
+		final Duration             commitInterval
+	)
 	{
 		super();
-		this.entityType        = Objects.requireNonNull(entityType, () -> "EntityType cannot be null");
-		this.documentPopulator = Objects.requireNonNull(documentPopulator, () -> "DocumentPopulator cannot be null");
-		this.entityMatcher     = Objects.requireNonNull(entityMatcher, () -> "EntityMatcher cannot be null");
+		this.entityType           = Objects.requireNonNull(entityType, () -> "EntityType cannot be null");
+		this.path                 = Objects.requireNonNull(directory, () -> "Directory cannot be null")
+			.resolve(entityType.getSimpleName());
+		this.entityIdentifier     = Objects.requireNonNull(entityIdentifier, () -> "EntityIdentifier cannot be null");
+		this.documentPopulator    = Objects.requireNonNull(documentPopulator, () -> "DocumentPopulator cannot be null");
+		this.entityMatcher        = Objects.requireNonNull(entityMatcher, () -> "EntityMatcher cannot be null");
+		this.maxRefreshDelayNanos = Objects.requireNonNull(maxRefreshDelay, () -> "MaxRefreshDelay cannot be null").toNanos();
+		this.commitIntervalNanos  = Objects.requireNonNull(commitInterval, () -> "CommitInterval cannot be null").toNanos();
 	}
 
 	/**
-	 * Adds an Java object to this index
+	 * Adds an Java object to this index.
+	 * <p>
+	 * The document is added asynchronously, it is visible to searches within the maximum refresh delay.
 	 *
 	 * @param entity the java object to add
+	 * @see #flush()
 	 */
-	public synchronized void add(final T entity)
+	public void add(final T entity)
 	{
-		this.lazyInit();
-
-		try
-		{
-			final Document document = new Document();
-			this.documentPopulator.accept(document, entity);
-			this.writer.addDocument(document);
-			this.writer.flush();
-			this.writer.commit();
-		}
-		catch(final IOException e)
-		{
-			throw new IORuntimeException(e);
-		}
+		final Document document = this.createDocument(entity);
+		this.enqueue(writer -> writer.addDocument(document));
 	}
 
 	/**
 	 * Adds Java objects to this index, in a bulk operation.
+	 * <p>
+	 * The documents are added asynchronously, they are visible to searches within the maximum refresh delay.
 	 *
 	 * @param entities the java objects to add
+	 * @see #flush()
 	 */
-	public synchronized void addAll(final Collection<? extends T> entities)
+	public void addAll(final Collection<? extends T> entities)
 	{
-		this.lazyInit();
-
-		try
-		{
-			for(final T entity : entities)
-			{
-				final Document document = new Document();
-				this.documentPopulator.accept(document, entity);
-				this.writer.addDocument(document);
-			}
+		final List<Document> documents = entities.stream()
+			.map(this::createDocument)
+			.collect(toList());
+		this.enqueue(writer -> writer.addDocuments(documents));
+	}
 
-			this.writer.flush();
-			this.writer.commit();
-		}
-		catch(final IOException e)
-		{
-			throw new IORuntimeException(e);
-		}
+	private Document createDocument(final T entity)
+	{
+		final Document document = new Document();
+		document.add(new NumericDocValuesField(ID_FIELD, this.entityIdentifier.applyAsInt(entity)));
+		this.documentPopulator.accept(document, entity);
+		return document;
 	}
 
 	/**
 	 * Removes documents from this index based on a query.
+	 * <p>
+	 * The documents are removed asynchronously.
 	 *
 	 * @param query the query to match the documents which should be removed
 	 */
-	public synchronized void remove(final Query query)
+	public void remove(final Query query)
 	{
-		this.lazyInit();
+		this.enqueue(writer -> writer.deleteDocuments(query));
+	}
 
-		try
-		{
-			this.writer.deleteDocuments(query);
-			this.writer.flush();
-			this.writer.commit();
-		}
-		catch(final IOException e)
+	/**
+	 * Removes all entries from this index.
+	 * <p>
+	 * The documents are removed asynchronously.
+	 */
+	public void clear()
+	{
+		this.enqueue(IndexWriter::deleteAll);
+	}
+
+	/**
+	 * Replaces all entries of this index and sets the version of the indexed data.
+	 * <p>
+	 * The documents are created in parallel and applied at once, asynchronously.
+	 * So searches see either all old or all new entries.
+	 *
+	 * @param entities the java objects to index
+	 * @param version the version of the indexed data
+	 * @see #flush()
+	 */
+	public void rebuild(
+		final Collection<? extends T> entities,
+		final long                    version
+	)
+	{
+		final List<Document>      documents = entities.parallelStream()
+			.map(this::createDocument)
+			.collect(toList());
+		final Map<String, String> userData  = versionUserData(version);
+		this.enqueue(writer ->
 		{
-			throw new IORuntimeException(e);
-		}
+			writer.deleteAll();
+			writer.addDocuments(documents);
+			writer.setLiveCommitData(userData.entrySet());
+		});
 	}
 
 	/**
-	 * Removes all entries from this index.
+	 * Sets the version of the indexed data, asynchronously.
+	 * It is committed together with the changes which were queued before.
+	 *
+	 * @param version the version of the indexed data
+	 * @see #version()
 	 */
-	public synchronized void clear()
+	public void setVersion(final long version)
 	{
-		this.lazyInit();
+		final Map<String, String> userData = versionUserData(version);
+		this.enqueue(writer -> writer.setLiveCommitData(userData.entrySet()));
+	}
 
+	/**
+	 * Gets the version of the indexed data, see {@link #setVersion(long)}.
+	 * Directly after the index is opened, this is the version of its last commit.
+	 *
+	 * @return the version, or -1 if none was set
+	 */
+	public long version()
+	{
+		return this.withState(state ->
+		{
+			final Iterable<Map.Entry<String, String>> userData = state.writer.getLiveCommitData();
+			if(userData != null)
+			{
+				for(final Map.Entry<String, String> entry : userData)
+				{
+					if(VERSION_KEY.equals(entry.getKey()))
+					{
+						return Long.parseLong(entry.getValue());
+					}
+				}
+			}
+			return -1L;
+		});
+	}
+
+	private static Map<String, String> versionUserData(final long version)
+	{
+		return Map.of(VERSION_KEY, Long.toString(version));
+	}
+
+	/**
+	 * Waits until all pending changes are applied and visible to searches.
+	 *
+	 * @throws IORuntimeException if a pending change could not be applied or committed
+	 * @throws RuntimeException if a pending change failed otherwise, it is discarded
+	 */
+	public void flush()
+	{
+		final Barrier barrier = new Barrier();
+		this.enqueue(barrier);
 		try
 		{
-			this.writer.deleteAll();
-			this.writer.flush();
-			this.writer.commit();
+			barrier.future.get();
 		}
-		catch(final IOException e)
+		catch(final InterruptedException e)
 		{
-			throw new IORuntimeException(e);
+			Thread.currentThread().interrupt();
+		}
+		catch(final ExecutionException e)
+		{
+			if(e.getCause() instanceof IOException)
+			{
+				throw new IORuntimeException((IOException)e.getCause());
+			}
+			Throwables.throwIfUnchecked(e.getCause());
+			throw new IllegalStateException(e.getCause());
 		}
 	}
 
+	/**
+	 * Queues a write operation for the indexer thread.
+	 * The index is opened if necessary, the read lock ensures that it is not closed meanwhile.
+	 */
+	private void enqueue(final Operation operation)
+	{
+		this.withState(state -> this.queue.add(operation));
+	}
+
 	/**
 	 * Queries this index.
 	 *
@@ -182,32 +596,164 @@ public class Index<T> implements Closeable
 	 * @param maxResults maximum number of results
 	 * @return the list of found objects
 	 */
-	public synchronized List<T> search(
+	public List<T> search(
 		final Query query     ,
 		final int   maxResults
 	)
 	{
-		this.lazyInit();
+		return this.search(query, 0, maxResults);
+	}
 
-		try
+	/**
+	 * Queries this index and returns a page of the results, ordered by relevance.
+	 *
+	 * @param query the search query
+	 * @param offset the number of results to skip
+	 * @param limit the maximum number of returned results
+	 * @return the list of found objects
+	 */
+	public List<T> search(
+		final Query query ,
+		final int   offset,
+		final int   limit
+	)
+	{
+		validatePage(offset, limit);
+		if(limit == 0)
+		{
+			return new ArrayList<>();
+		}
+
+		return this.withState(state ->
 		{
-			final TopDocs topDocs = this.searcher.search(query, maxResults);
-			final List<T> result = new ArrayList<>(topDocs.scoreDocs.length);
-			for(final ScoreDoc scoreDoc : topDocs.scoreDocs)
+			final IndexSearcher searcher = state.searcherManager.acquire();
+			try
 			{
-				final Document document = this.searcher.doc(scoreDoc.doc);
-				final T entity = this.entityMatcher.apply(document);
-				if(entity != null)
-				{
-					result.add(entity);
-				}
+				/*
+				 * The searcher limits the number of hits to the number of documents.
+				 */
+				final int numHits = (int)Math.min((long)offset + limit, Integer.MAX_VALUE);
+				return this.resolve(searcher, searcher.search(query, numHits).scoreDocs, offset);
+			}
+			finally
+			{
+				state.searcherManager.release(searcher);
 			}
-			return result;
+		});
+	}
+
+	/**
+	 * Queries this index and returns a page of the results, ordered by relevance,
+	 * together with the total amount of hits and the facet counts, in one pass.
+	 * <p>
+	 * The facet fields have to be {@link SortedDocValuesField}s, added by the {@link DocumentPopulator}.
+	 *
+	 * @param query the search query
+	 * @param offset the number of results to skip
+	 * @param limit the maximum number of returned results, may be 0 if only the counts are needed
+	 * @param facetFields the fields to count the hits per value of
+	 * @return the hits
+	 */
+	public Hits<T> search(
+		final Query     query      ,
+		final int       offset     ,
+		final int       limit      ,
+		final String... facetFields
+	)
+	{
+		validatePage(offset, limit);
+
+		return this.withState(state ->
+		{
+			final IndexSearcher searcher = state.searcherManager.acquire();
+			try
+			{
+				final int                  numHits        = (int)Math.max(
+					1L,
+					Math.min((long)offset + limit, searcher.getIndexReader().maxDoc())
+				);
+				final TopScoreDocCollector topCollector   = TopScoreDocCollector.create(numHits, Integer.MAX_VALUE);
+				final FacetCollector       facetCollector = new FacetCollector(facetFields);
+				searcher.search(query, MultiCollector.wrap(topCollector, facetCollector));
+				facetCollector.finishSegment();
+
+				return new Hits<>(
+					limit == 0
+						? new ArrayList<>()
+						: this.resolve(searcher, topCollector.topDocs().scoreDocs, offset),
+					facetCollector.totalHits,
+					facetCollector.counts
+				);
+			}
+			finally
+			{
+				state.searcherManager.release(searcher);
+			}
+		});
+	}
+
+	private static void validatePage(
+		final int offset,
+		final int limit
+	)
+	{
+		if(offset < 0)
+		{
+			throw new IllegalArgumentException("offset < 0: " + offset);
 		}
-		catch(final IOException e)
+		if(limit < 0)
 		{
-			throw new IORuntimeException(e);
+			throw new IllegalArgumentException("limit < 0: " + limit);
+		}
+	}
+
+	/**
+	 * Resolves the Java objects of the hits, starting at offset.
+	 */
+	private List<T> resolve(
+		final IndexSearcher searcher,
+		final ScoreDoc[]    hits    ,
+		final int           offset
+	)
+		throws IOException
+	{
+		final List<LeafReaderContext> segments = searcher.getIndexReader().leaves();
+		final List<T>                 result   = new ArrayList<>(Math.max(hits.length - offset, 0));
+		for(int i = offset; i < hits.length; i++)
+		{
+			final LeafReaderContext segment = segments.get(ReaderUtil.subIndex(hits[i].doc, segments));
+			final int               id      = this.ids(segment.reader())[hits[i].doc - segment.docBase];
+			final T                 entity  = id != 0
+				? this.entityMatcher.apply(id)
+				: null;
+			if(entity != null)
+			{
+				result.add(entity);
+			}
 		}
+		return result;
+	}
+
+	/**
+	 * Counts the documents which match a query.
+	 *
+	 * @param query the query
+	 * @return the amount of matching documents
+	 */
+	public int count(final Query query)
+	{
+		return this.withState(state ->
+		{
+			final IndexSearcher searcher = state.searcherManager.acquire();
+			try
+			{
+				return searcher.count(query);
+			}
+			finally
+			{
+				state.searcherManager.release(searcher);
+			}
+		});
 	}
 
 	/**
@@ -215,57 +761,196 @@ public class Index<T> implements Closeable
 	 *
 	 * @return a new query builder.
 	 */
-	public synchronized QueryBuilder createQueryBuilder()
+	public QueryBuilder createQueryBuilder()
 	{
-		this.lazyInit();
+		return new QueryBuilder(this.analyzer);
+	}
 
-		return new QueryBuilder(
-			this.writer.getAnalyzer()
-		);
+	/**
+	 * Splits a text into the terms of a field, the same way as the field's values are indexed.
+	 *
+	 * @param field the field
+	 * @param text the text to analyze
+	 * @return the terms
+	 */
+	public List<String> analyze(
+		final String field,
+		final String text
+	)
+	{
+		final List<String> terms = new ArrayList<>();
+		try(final TokenStream tokenStream = this.analyzer.tokenStream(field, text))
+		{
+			final CharTermAttribute termAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+			tokenStream.reset();
+			while(tokenStream.incrementToken())
+			{
+				terms.add(termAttribute.toString());
+			}
+			tokenStream.end();
+		}
+		catch(final IOException e)
+		{
+			throw new IORuntimeException(e);
+		}
+		return terms;
 	}
 
 	/**
-	 * Get the amount of entries in this index.
+	 * Get the amount of entries in this index, which are visible to searches.
 	 *
 	 * @return amount of entries
 	 */
-	public synchronized int size()
+	public int size()
 	{
-		this.lazyInit();
+		return this.withState(state ->
+		{
+			final IndexSearcher searcher = state.searcherManager.acquire();
+			try
+			{
+				return searcher.getIndexReader().numDocs();
+			}
+			finally
+			{
+				state.searcherManager.release(searcher);
+			}
+		});
+	}
 
-		return this.searcher.getIndexReader().numDocs();
+	/**
+	 * Get the amount of entries in this index, which are visible to searches but have no id,
+	 * e.g. because they were added by a previous version.
+	 * These entries are never found.
+	 *
+	 * @return amount of entries without an id
+	 */
+	public int sizeWithoutIds()
+	{
+		return this.withState(state ->
+		{
+			final IndexSearcher searcher = state.searcherManager.acquire();
+			try
+			{
+				int count = 0;
+				for(final LeafReaderContext segment : searcher.getIndexReader().leaves())
+				{
+					final Bits  liveDocs = segment.reader().getLiveDocs();
+					final int[] ids      = this.ids(segment.reader());
+					for(int doc = 0; doc < ids.length; doc++)
+					{
+						if(ids[doc] == 0 && (liveDocs == null || liveDocs.get(doc)))
+						{
+							count++;
+						}
+					}
+				}
+				return count;
+			}
+			finally
+			{
+				state.searcherManager.release(searcher);
+			}
+		});
 	}
 
-	private void lazyInit()
+	/**
+	 * Gets the cached ids of a segment's documents, they are read on the first access.
+	 * Document numbers and doc values of a segment never change, only deletions are added,
+	 * so the ids stay valid until the segment is closed.
+	 */
+	private int[] ids(final LeafReader reader) throws IOException
 	{
-		try
+		final CacheHelper cacheHelper = reader.getCoreCacheHelper();
+		if(cacheHelper == null)
+		{
+			return readIds(reader);
+		}
+
+		final CacheKey key = cacheHelper.getKey();
+		int[]          ids = this.segmentIds.get(key);
+		if(ids == null)
 		{
-			if(this.directory == null)
+			ids = readIds(reader);
+			if(this.segmentIds.putIfAbsent(key, ids) == null)
 			{
-				final Path path = Paths.get(
-					"data",
-					"index",
-					this.entityType.getSimpleName()
-				);
-				this.directory = new MMapDirectory(path);
-				this.writer = new IndexWriter(
-					this.directory,
-					new IndexWriterConfig(new StandardAnalyzer())
-				);
-				this.searcher = new IndexSearcher(
-					this.reader = DirectoryReader.open(this.writer)
-				);
+				cacheHelper.addClosedListener(this.segmentIds::remove);
 			}
-			else
+		}
+		return ids;
+	}
+
+	private static int[] readIds(final LeafReader reader) throws IOException
+	{
+		final int[]            ids    = new int[reader.maxDoc()];
+		final NumericDocValues values = reader.getNumericDocValues(ID_FIELD);
+		if(values == null)
+		{
+			return ids;
+		}
+
+		for(int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc())
+		{
+			ids[doc] = (int)values.longValue();
+		}
+		return ids;
+	}
+
+	/**
+	 * Executes an operation on the open index under the read lock, the index is opened if necessary.
+	 */
+	@SuppressWarnings("unchecked")
+	private <R> R withState(final StateOperation<R> operation)
+	{
+		while(true)
+		{
+			final Object result = this.read(() ->
 			{
-				final DirectoryReader newReader = DirectoryReader.openIfChanged(this.reader);
-				if(newReader != null && newReader != this.reader)
+				final State state = this.state;
+				if(state == null)
+				{
+					return CLOSED;
+				}
+				try
 				{
-					this.reader.close();
-					this.reader   = newReader;
-					this.searcher = new IndexSearcher(this.reader);
+					return operation.execute(state);
 				}
+				catch(final IOException e)
+				{
+					throw new IORuntimeException(e);
+				}
+			});
+			if(result != CLOSED)
+			{
+				return (R)result;
 			}
+
+			this.write(() ->
+			{
+				if(this.state == null)
+				{
+					this.state = this.open();
+				}
+			});
+		}
+	}
+
+	private State open()
+	{
+		try
+		{
+			final MMapDirectory   directory       = new MMapDirectory(this.path);
+			final IndexWriter     writer          = new IndexWriter(
+				directory,
+				new IndexWriterConfig(this.analyzer)
+			);
+			final SearcherManager searcherManager = new SearcherManager(writer, new SearcherFactory());
+			final Thread          indexer         = new Thread(
+				() -> this.runIndexer(writer, searcherManager),
+				"Indexer-" + this.entityType.getSimpleName()
+			);
+			indexer.setDaemon(true);
+			indexer.start();
+			return new State(directory, writer, searcherManager, indexer);
 		}
 		catch(final IOException e)
 		{
@@ -273,19 +958,165 @@ public class Index<T> implements Closeable
 		}
 	}
 
+	/**
+	 * Applies the queued operations in batches, refreshes the searchers after each batch
+	 * and commits the changes periodically, until it is stopped by {@link #close()}.
+	 */
+	private void runIndexer(
+		final IndexWriter     writer         ,
+		final SearcherManager searcherManager
+	)
+	{
+		final List<Operation> batch      = new ArrayList<>();
+		long                  lastCommit = System.nanoTime();
+		boolean               running    = true;
+		while(running)
+		{
+			try
+			{
+				this.collect(batch);
+			}
+			catch(final InterruptedException e)
+			{
+				batch.add(STOP);
+			}
+
+			/*
+			 * Any error is caught, so the indexer thread stays alive and the barriers are always completed.
+			 * A failing operation, e.g. because of an invalid document, is discarded,
+			 * the other operations of the batch are applied nevertheless.
+			 */
+			Throwable error = null;
+			int       lost  = 0;
+			for(final Operation operation : batch)
+			{
+				if(operation == STOP)
+				{
+					running = false;
+					continue;
+				}
+				try
+				{
+					operation.execute(writer);
+				}
+				catch(final Throwable t)
+				{
+					lost++;
+					error = error != null ? error : t;
+				}
+			}
+			if(lost > 0)
+			{
+				this.logger().severe(lost + " operation(s) on index " + this.path + " failed and were discarded", error);
+			}
+
+			try
+			{
+				if(batch.size() > 0)
+				{
+					searcherManager.maybeRefreshBlocking();
+				}
+				if(writer.hasUncommittedChanges()
+					&& (!running || System.nanoTime() - lastCommit >= this.commitIntervalNanos)
+				)
+				{
+					writer.commit();
+					lastCommit = System.nanoTime();
+				}
+			}
+			catch(final Throwable t)
+			{
+				this.logger().severe("Error updating index " + this.path, t);
+				error = error != null ? error : t;
+			}
+
+			for(final Operation operation : batch)
+			{
+				if(operation instanceof Barrier)
+				{
+					if(error == null)
+					{
+						((Barrier)operation).future.complete(null);
+					}
+					else
+					{
+						((Barrier)operation).future.completeExceptionally(error);
+					}
+				}
+			}
+			batch.clear();
+		}
+	}
+
+	/**
+	 * Collects the next batch, waits at most the commit interval for the first operation
+	 * and at most the maximum refresh delay for further ones.
+	 */
+	private void collect(final List<Operation> batch) throws InterruptedException
+	{
+		final Operation first = this.queue.poll(this.commitIntervalNanos, TimeUnit.NANOSECONDS);
+		if(first == null)
+		{
+			return;
+		}
+		batch.add(first);
+
+		final long deadline = System.nanoTime() + this.maxRefreshDelayNanos;
+		Operation  next     = first;
+		while(next != STOP && batch.size() < MAX_BATCH_SIZE)
+		{
+			final long remaining = deadline - System.nanoTime();
+			if(remaining <= 0L || (next = this.queue.poll(remaining, TimeUnit.NANOSECONDS)) == null)
+			{
+				break;
+			}
+			batch.add(next);
+		}
+	}
+
+	/**
+	 * Closes this index, all pending changes are applied and committed before.
+	 * It is reopened on demand.
+	 * <p>
+	 * This waits until all running operations are finished.
+	 */
 	@Override
-	public synchronized void close() throws IOException
+	public void close() throws IOException
 	{
-		if(this.directory != null)
+		final IOException error = this.write(() ->
 		{
-			this.writer.close();
-			this.reader.close();
-			this.directory.close();
+			final State state = this.state;
+			if(state == null)
+			{
+				return null;
+			}
+			this.state = null;
+
+			this.queue.add(STOP);
+			try
+			{
+				state.indexer.join();
+			}
+			catch(final InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
 
-			this.directory = null;
-			this.writer    = null;
-			this.reader    = null;
-			this.searcher  = null;
+			try
+			{
+				state.searcherManager.close();
+				state.writer.close();
+				state.directory.close();
+				return null;
+			}
+			catch(final IOException e)
+			{
+				return e;
+			}
+		});
+		if(error != null)
+		{
+			throw error;
 		}
 	}
 
@@ -1,32 +1,73 @@
 package one.microstream.demo.bookstore.data;
 
 import static java.util.stream.Collectors.toList;
-import static one.microstream.X.coalesce;
+import static one.microstream.demo.bookstore.util.ValidationUtils.requirePositive;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.function.Function;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import one.microstream.demo.bookstore.BookStoreDemo;
 import one.microstream.demo.bookstore.util.concurrent.ReadWriteLocked;
+import one.microstream.persistence.types.Persister;
+import one.microstream.storage.embedded.types.EmbeddedStorageManager;
 
 /**
  * Inventory entity which holds {@link Book}s and amounts of them.
  * <p>
+ * Every book has a slot, the books and their amounts are held in parallel, fixed-size chunks of
+ * primitive counters and book references, indexed by slot. So there is no boxed amount or map entry per slot,
+ * and the persisted form consists of plain arrays as well.
+ * A change of an amount only stores the affected chunk, not the whole inventory.
+ * <p>
+ * The slots of the books are found with a transient open addressing hash table,
+ * which is rebuilt when the inventory is loaded.
+ * <p>
  * All operations on this type are thread safe.
+ * The amounts of existing slots are changed under the read lock, with atomic compare-and-set operations,
+ * so many checkouts can reserve books concurrently.
+ * Each chunk is stored under its own monitor, so an older state never overwrites a newer one.
+ * Only new slots require the write lock.
+ * <p>
+ * When the shop is added to {@link Shops}, the inventory is attached to the {@link StockIndex},
+ * which is informed about every new slot and every change of an amount from then on.
  *
  * @see ReadWriteLocked
  */
 public class Inventory extends ReadWriteLocked
 {
-	private final Map<Book, Integer> inventoryMap;
+	private final static int       CHUNK_SIZE = 256;
+
+	/*
+	 * Atomic access to the elements of the amount chunks.
+	 */
+	private final static VarHandle AMOUNT     = MethodHandles.arrayElementVarHandle(int[].class);
+
+	private                    Book[][]   books     ;
+	private                    int[][]    amounts   ;
+	private                    int        size      ;
+	private                    Shop       shop      ;
+	private                    StockIndex stockIndex;
+
+	/*
+	 * Open addressing hash table of slot + 1 by book id, 0 marks a free position.
+	 */
+	private transient volatile int[]      table     ;
 
 	public Inventory()
 	{
-		this(new HashMap<>());
+		this(Collections.emptyMap());
 	}
 
 	/**
@@ -35,10 +76,17 @@ public class Inventory extends ReadWriteLocked
 	Inventory(final Map<Book, Integer> inventoryMap)
 	{
 		super();
-		
-		this.inventoryMap = inventoryMap;
+
+		final int chunkCount = Math.max(1, (inventoryMap.size() + CHUNK_SIZE - 1) / CHUNK_SIZE);
+		this.books   = new Book[chunkCount][];
+		this.amounts = new int[chunkCount][];
+		inventoryMap.forEach((book, amount) ->
+		{
+			final int slot = this.addSlot(book, null);
+			this.amounts[slot / CHUNK_SIZE][slot % CHUNK_SIZE] = amount;
+		});
 	}
-	
+
 	/**
 	 * Get the amount of a specific book in this inventory.
 	 *
@@ -47,14 +95,18 @@ public class Inventory extends ReadWriteLocked
 	 */
 	public int amount(final Book book)
 	{
-		return this.read(() -> coalesce(
-			this.inventoryMap.get(book),
-			0
-		));
+		return this.read(() ->
+		{
+			final int slot = this.slotOf(book);
+			return slot >= 0
+				? this.amount(slot)
+				: 0;
+		});
 	}
 
 	/**
 	 * Executes a function with a {@link Stream} of {@link Entry}s and returns the computed value.
+	 * Only books with an amount greater than zero are included.
 	 *
 	 * @param <T> the return type
 	 * @param streamFunction computing function
@@ -64,7 +116,7 @@ public class Inventory extends ReadWriteLocked
 	{
 		return this.read(() ->
 			streamFunction.apply(
-				this.inventoryMap.entrySet().stream()
+				this.entries()
 			)
 		);
 	}
@@ -77,8 +129,17 @@ public class Inventory extends ReadWriteLocked
 	public int slotCount()
 	{
 		return this.read(() ->
-			this.inventoryMap.size()
-		);
+		{
+			int count = 0;
+			for(int slot = 0; slot < this.size; slot++)
+			{
+				if(this.amount(slot) > 0)
+				{
+					count++;
+				}
+			}
+			return count;
+		});
 	}
 
 	/**
@@ -90,7 +151,7 @@ public class Inventory extends ReadWriteLocked
 	public List<Entry<Book, Integer>> slots()
 	{
 		return this.read(() ->
-			new ArrayList<>(this.inventoryMap.entrySet())
+			this.entries().collect(toList())
 		);
 	}
 
@@ -103,8 +164,478 @@ public class Inventory extends ReadWriteLocked
 	public List<Book> books()
 	{
 		return this.read(() ->
-			this.inventoryMap.keySet().stream().collect(toList())
+			this.entries().map(Entry::getKey).collect(toList())
+		);
+	}
+
+	/**
+	 * Reserves books and stores the change with the {@link BookStoreDemo}'s {@link EmbeddedStorageManager}.
+	 * <p>
+	 * This is a synonym for:<pre>this.reserve(book, amount, BookStoreDemo.getInstance().storageManager())</pre>
+	 *
+	 * @param book the book to reserve
+	 * @param amount the amount to reserve, positive
+	 * @return <code>true</code> if the books were reserved,
+	 * <code>false</code> if the stock is insufficient, then nothing is changed
+	 */
+	public boolean reserve(
+		final Book book  ,
+		final int  amount
+	)
+	{
+		return this.reserve(book, amount, BookStoreDemo.getInstance().storageManager());
+	}
+
+	/**
+	 * Reserves books, which decrements their amount, and stores the change with the given persister.
+	 *
+	 * @param book the book to reserve
+	 * @param amount the amount to reserve, positive
+	 * @param persister the persister to store the change with
+	 * @return <code>true</code> if the books were reserved,
+	 * <code>false</code> if the stock is insufficient, then nothing is changed
+	 * @see #release(Book, int, Persister)
+	 */
+	public boolean reserve(
+		final Book      book     ,
+		final int       amount   ,
+		final Persister persister
+	)
+	{
+		requirePositive(amount, () -> "Amount must be greater than zero");
+		return this.read(() ->
+		{
+			final int slot = this.slotOf(book);
+			if(slot < 0 || !this.tryDecrement(slot, amount))
+			{
+				return false;
+			}
+			this.changed(book, -amount);
+			this.storeChunk(slot, persister);
+			return true;
+		});
+	}
+
+	/**
+	 * Reserves the books of all items of a purchase, all or nothing.
+	 *
+	 * @param items the items to reserve
+	 * @param persister the persister to store the changes with
+	 * @return <code>true</code> if all items were reserved,
+	 * <code>false</code> if the stock of any item is insufficient, then nothing is changed
+	 * @see #releaseAll(Collection, Persister)
+	 */
+	boolean reserveAll(
+		final Collection<PurchaseItem> items    ,
+		final Persister                persister
+	)
+	{
+		return this.read(() ->
+		{
+			final List<PurchaseItem> reserved = new ArrayList<>(items.size());
+			final Set<int[]>         chunks   = Collections.newSetFromMap(new IdentityHashMap<>());
+			boolean                  success  = true;
+			for(final PurchaseItem item : items)
+			{
+				final int slot = this.slotOf(item.book());
+				if(slot < 0 || !this.tryDecrement(slot, item.amount()))
+				{
+					success = false;
+					break;
+				}
+				reserved.add(item);
+				chunks.add(this.amounts[slot / CHUNK_SIZE]);
+			}
+			if(success)
+			{
+				reserved.forEach(item -> this.changed(item.book(), -item.amount()));
+			}
+			else
+			{
+				reserved.forEach(item -> this.increment(this.slotOf(item.book()), item.amount()));
+			}
+			/*
+			 * Stored in any case, another thread may have stored a chunk while it was decremented.
+			 */
+			chunks.forEach(chunk -> storeChunk(chunk, persister));
+			return success;
+		});
+	}
+
+	/**
+	 * Releases reserved books, e.g. of a canceled purchase,
+	 * and stores the change with the {@link BookStoreDemo}'s {@link EmbeddedStorageManager}.
+	 * <p>
+	 * This is a synonym for:<pre>this.release(book, amount, BookStoreDemo.getInstance().storageManager())</pre>
+	 *
+	 * @param book the book to release
+	 * @param amount the amount to release, positive
+	 */
+	public void release(
+		final Book book  ,
+		final int  amount
+	)
+	{
+		this.release(book, amount, BookStoreDemo.getInstance().storageManager());
+	}
+
+	/**
+	 * Releases reserved books, which increments their amount, and stores the change with the given persister.
+	 *
+	 * @param book the book to release
+	 * @param amount the amount to release, positive
+	 * @param persister the persister to store the change with
+	 * @see #reserve(Book, int, Persister)
+	 */
+	public void release(
+		final Book      book     ,
+		final int       amount   ,
+		final Persister persister
+	)
+	{
+		this.restock(book, amount, persister);
+	}
+
+	/**
+	 * Releases the books of all items of a purchase.
+	 *
+	 * @param items the items to release
+	 * @param persister the persister to store the changes with
+	 * @see #reserveAll(Collection, Persister)
+	 */
+	void releaseAll(
+		final Collection<PurchaseItem> items    ,
+		final Persister                persister
+	)
+	{
+		items.forEach(item -> this.release(item.book(), item.amount(), persister));
+	}
+
+	/**
+	 * Adds books to this inventory and stores the change with the {@link BookStoreDemo}'s {@link EmbeddedStorageManager}.
+	 * <p>
+	 * This is a synonym for:<pre>this.restock(book, amount, BookStoreDemo.getInstance().storageManager())</pre>
+	 *
+	 * @param book the book to add
+	 * @param amount the amount to add, positive
+	 */
+	public void restock(
+		final Book book  ,
+		final int  amount
+	)
+	{
+		this.restock(book, amount, BookStoreDemo.getInstance().storageManager());
+	}
+
+	/**
+	 * Adds books to this inventory, which increments their amount, and stores the change with the given persister.
+	 * Books which were not in this inventory before get a new slot.
+	 *
+	 * @param book the book to add
+	 * @param amount the amount to add, positive
+	 * @param persister the persister to store the change with
+	 */
+	public void restock(
+		final Book      book     ,
+		final int       amount   ,
+		final Persister persister
+	)
+	{
+		requirePositive(amount, () -> "Amount must be greater than zero");
+		final boolean restocked = this.read(() ->
+		{
+			final int slot = this.slotOf(book);
+			if(slot < 0)
+			{
+				return false;
+			}
+			this.increment(slot, amount);
+			this.changed(book, amount);
+			this.storeChunk(slot, persister);
+			return true;
+		});
+		if(!restocked)
+		{
+			this.write(() ->
+			{
+				final Set<Object> changedObjects = Collections.newSetFromMap(new IdentityHashMap<>());
+				final int         existingSlot   = this.slotOf(book);
+				final int         slot           = existingSlot >= 0
+					? existingSlot
+					: this.addSlot(book, changedObjects);
+				this.increment(slot, amount);
+				this.changed(book, amount);
+				changedObjects.add(this.amounts[slot / CHUNK_SIZE]);
+				/*
+				 * No chunk is stored concurrently under the write lock.
+				 */
+				persister.storeAll(changedObjects);
+				if(existingSlot < 0 && this.stockIndex != null)
+				{
+					this.stockIndex.addAll(List.of(Map.entry(book, this.stock(slot))), persister);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Attaches this inventory to the stock index, which is informed about every new slot from then on.
+	 *
+	 * @param shop the shop which holds this inventory
+	 * @param stockIndex the stock index of all shops
+	 * @return the stocks of all existing slots, which have to be added to the index by the caller
+	 */
+	List<Entry<Book, Stock>> attach(
+		final Shop       shop      ,
+		final StockIndex stockIndex
+	)
+	{
+		return this.write(() ->
+		{
+			this.shop       = shop;
+			this.stockIndex = stockIndex;
+			return IntStream.range(0, this.size)
+				.mapToObj(slot -> Map.entry(this.book(slot), this.stock(slot)))
+				.collect(toList());
+		});
+	}
+
+	/**
+	 * Counts all slots into the stock totals, which get all changes of this inventory from then on.
+	 *
+	 * @param totals the stock totals of all shops
+	 */
+	void count(final InventoryTotals totals)
+	{
+		this.write(() ->
+			totals.count(this.shop, this.entries())
 		);
 	}
 
+	/**
+	 * Passes a change on to the stock totals, the caller has to hold the lock.
+	 */
+	private void changed(
+		final Book book ,
+		final int  delta
+	)
+	{
+		if(this.stockIndex != null)
+		{
+			this.stockIndex.change(this.shop, book, delta);
+		}
+	}
+
+	private Stock stock(final int slot)
+	{
+		return new Stock(this.shop, this.amounts[slot / CHUNK_SIZE], slot % CHUNK_SIZE);
+	}
+
+	/**
+	 * Adds a new slot for a book, the caller has to hold the write lock.
+	 */
+	private int addSlot(
+		final Book               book          ,
+		final Collection<Object> changedObjects
+	)
+	{
+		final int slot       = this.size;
+		final int chunkIndex = slot / CHUNK_SIZE;
+		if(chunkIndex == this.amounts.length)
+		{
+			this.books   = Arrays.copyOf(this.books  , chunkIndex * 2);
+			this.amounts = Arrays.copyOf(this.amounts, chunkIndex * 2);
+		}
+		if(this.amounts[chunkIndex] == null)
+		{
+			this.books[chunkIndex]   = new Book[CHUNK_SIZE];
+			this.amounts[chunkIndex] = new int[CHUNK_SIZE];
+			if(changedObjects != null)
+			{
+				changedObjects.add(this.books);
+				changedObjects.add(this.amounts);
+			}
+		}
+		final int[] table = this.ensureTableCapacity(slot + 1);
+		this.books[chunkIndex][slot % CHUNK_SIZE] = book;
+		this.size = slot + 1;
+		insert(table, book, slot);
+		if(changedObjects != null)
+		{
+			changedObjects.add(this.books[chunkIndex]);
+			changedObjects.add(this);
+		}
+		return slot;
+	}
+
+	/**
+	 * Gets the slot of a book, or -1 if this inventory doesn't contain it.
+	 * The caller has to hold the lock.
+	 */
+	private int slotOf(final Book book)
+	{
+		final int[] table = this.table();
+		final int   mask  = table.length - 1;
+		for(int index = hash(book) & mask; ; index = (index + 1) & mask)
+		{
+			final int entry = table[index];
+			if(entry == 0)
+			{
+				return -1;
+			}
+			if(this.book(entry - 1) == book)
+			{
+				return entry - 1;
+			}
+		}
+	}
+
+	/**
+	 * Gets the hash table, it is transient and built on first use after loading.
+	 */
+	private int[] table()
+	{
+		/*
+		 * Double-checked locking to reduce the overhead of acquiring a lock
+		 * by testing the locking criterion.
+		 * The field (this.table) has to be volatile.
+		 */
+		int[] table = this.table;
+		if(table == null)
+		{
+			synchronized(this)
+			{
+				if((table = this.table) == null)
+				{
+					this.table = table = this.createTable(this.size);
+				}
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Grows the hash table if needed, keeping the load factor at most 0.5.
+	 * The caller has to hold the write lock.
+	 */
+	private int[] ensureTableCapacity(final int slotCount)
+	{
+		final int[] table = this.table();
+		if(slotCount * 2 <= table.length)
+		{
+			return table;
+		}
+		return this.table = this.createTable(slotCount);
+	}
+
+	private int[] createTable(final int slotCount)
+	{
+		final int[] table = new int[Math.max(16, Integer.highestOneBit(Math.max(1, slotCount) * 2 - 1) << 1)];
+		for(int slot = 0; slot < this.size; slot++)
+		{
+			insert(table, this.book(slot), slot);
+		}
+		return table;
+	}
+
+	private static void insert(
+		final int[] table,
+		final Book  book ,
+		final int   slot
+	)
+	{
+		final int mask  = table.length - 1;
+		int       index = hash(book) & mask;
+		while(table[index] != 0)
+		{
+			index = (index + 1) & mask;
+		}
+		table[index] = slot + 1;
+	}
+
+	private static int hash(final Book book)
+	{
+		final int hash = book.id() * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	private Book book(final int slot)
+	{
+		return this.books[slot / CHUNK_SIZE][slot % CHUNK_SIZE];
+	}
+
+	private Stream<Entry<Book, Integer>> entries()
+	{
+		return IntStream.range(0, this.size)
+			.mapToObj(slot -> Map.entry(this.book(slot), this.amount(slot)))
+			.filter(entry -> entry.getValue() > 0);
+	}
+
+	private int amount(final int slot)
+	{
+		return amount(this.amounts[slot / CHUNK_SIZE], slot % CHUNK_SIZE);
+	}
+
+	/**
+	 * Reads an amount of a chunk, also used by {@link Stock}, which shares the chunks.
+	 */
+	static int amount(
+		final int[] chunk,
+		final int   index
+	)
+	{
+		return (int)AMOUNT.getVolatile(chunk, index);
+	}
+
+	private boolean tryDecrement(
+		final int slot  ,
+		final int amount
+	)
+	{
+		final int[] chunk = this.amounts[slot / CHUNK_SIZE];
+		final int   index = slot % CHUNK_SIZE;
+		int         current;
+		do
+		{
+			current = amount(chunk, index);
+			if(current < amount)
+			{
+				return false;
+			}
+		}
+		while(!AMOUNT.compareAndSet(chunk, index, current, current - amount));
+		return true;
+	}
+
+	private void increment(
+		final int slot  ,
+		final int amount
+	)
+	{
+		AMOUNT.getAndAdd(this.amounts[slot / CHUNK_SIZE], slot % CHUNK_SIZE, amount);
+	}
+
+	private void storeChunk(
+		final int       slot     ,
+		final Persister persister
+	)
+	{
+		storeChunk(this.amounts[slot / CHUNK_SIZE], persister);
+	}
+
+	private static void storeChunk(
+		final int[]     chunk    ,
+		final Persister persister
+	)
+	{
+		/*
+		 * The chunk is copied and committed under its monitor,
+		 * so concurrent stores of the same chunk are written in order.
+		 */
+		synchronized(chunk)
+		{
+			persister.store(chunk);
+		}
+	}
+
 }
@@ -0,0 +1,84 @@
+package one.microstream.demo.bookstore.data;
+
+import java.util.List;
+
+import javax.money.MonetaryAmount;
+
+/**
+ * Total stock of all shops, and the totals per genre and per country, ordered by value descending.
+ * <p>
+ * This type is immutable and therefor inherently thread safe.
+ *
+ * @see Shops#inventorySummary()
+ */
+public class InventorySummary
+{
+	private final long               quantity ;
+	private final MonetaryAmount     value    ;
+	private final List<StockSummary> genres   ;
+	private final List<StockSummary> countries;
+
+	InventorySummary(
+		final long               quantity ,
+		final MonetaryAmount     value    ,
+		final List<StockSummary> genres   ,
+		final List<StockSummary> countries
+	)
+	{
+		super();
+		this.quantity  = quantity;
+		this.value     = value;
+		this.genres    = List.copyOf(genres);
+		this.countries = List.copyOf(countries);
+	}
+
+	/**
+	 * Get the amount of books in stock of all shops
+	 *
+	 * @return the total quantity
+	 */
+	public long quantity()
+	{
+		return this.quantity;
+	}
+
+	/**
+	 * Get the value of the books in stock of all shops, by purchase price
+	 *
+	 * @return the total stock value
+	 */
+	public MonetaryAmount value()
+	{
+		return this.value;
+	}
+
+	/**
+	 * Get the stock per genre
+	 *
+	 * @return the summaries of all genres
+	 */
+	public List<StockSummary> genres()
+	{
+		return this.genres;
+	}
+
+	/**
+	 * Get the stock per country
+	 *
+	 * @return the summaries of all countries
+	 */
+	public List<StockSummary> countries()
+	{
+		return this.countries;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "InventorySummary"
+			+ " [quantity=" + this.quantity
+			+ ", value="    + this.value
+			+ "]";
+	}
+
+}
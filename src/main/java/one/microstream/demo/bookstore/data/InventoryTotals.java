@@ -0,0 +1,186 @@
+package one.microstream.demo.bookstore.data;
+
+import static java.util.stream.Collectors.toList;
+import static one.microstream.demo.bookstore.BookStoreDemo.cents;
+import static one.microstream.demo.bookstore.BookStoreDemo.moneyOfCents;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Incrementally maintained stock totals of all inventories, per book, genre and country.
+ * <p>
+ * Values are held as primitive cents of the purchase price and only converted to
+ * {@link javax.money.MonetaryAmount}s when queried.
+ * <p>
+ * The totals are not persisted. They are counted once on first use, see {@link Shops#inventorySummary()},
+ * and maintained by the inventories from then on. A shop's inventory is counted under its write lock,
+ * changes are only added after the shop was counted, so nothing is counted twice or missed.
+ * <p>
+ * All operations on this type are thread safe.
+ * Concurrent changes may not be reflected in a summary yet.
+ *
+ * @see Inventory#count(InventoryTotals)
+ */
+class InventoryTotals
+{
+	private static class Counter
+	{
+		final LongAdder quantity = new LongAdder();
+		final LongAdder value    = new LongAdder();
+
+		Counter()
+		{
+			super();
+		}
+
+		void add(
+			final long quantity,
+			final long value
+		)
+		{
+			this.quantity.add(quantity);
+			this.value.add(value);
+		}
+
+		StockSummary summary(final String name)
+		{
+			return new StockSummary(name, this.quantity.sum(), moneyOfCents(this.value.sum()));
+		}
+	}
+
+	/**
+	 * Counter of a book, which holds the book's purchase price as well.
+	 */
+	private static class BookCounter extends Counter
+	{
+		final long price;
+
+		BookCounter(final Book book)
+		{
+			super();
+			this.price = cents(book.purchasePrice());
+		}
+	}
+
+
+	private final Map<Book, BookCounter> books        = new ConcurrentHashMap<>();
+	private final Map<Genre, Counter>    genres       = new ConcurrentHashMap<>();
+	private final Map<Country, Counter>  countries    = new ConcurrentHashMap<>();
+	private final Counter                total        = new Counter();
+	private final Set<Shop>              countedShops = ConcurrentHashMap.newKeySet();
+
+	InventoryTotals()
+	{
+		super();
+	}
+
+	/**
+	 * Adds all slots of a shop's inventory, the caller has to hold the inventory's write lock.
+	 *
+	 * @param shop the shop
+	 * @param entries the books and their amounts
+	 */
+	void count(
+		final Shop                         shop   ,
+		final Stream<Entry<Book, Integer>> entries
+	)
+	{
+		if(this.countedShops.contains(shop))
+		{
+			return;
+		}
+		entries.forEach(entry -> this.add(shop, entry.getKey(), entry.getValue()));
+		this.countedShops.add(shop);
+	}
+
+	/**
+	 * Adds a change of a shop's inventory, the caller has to hold the inventory's lock.
+	 *
+	 * @param shop the shop
+	 * @param book the changed book
+	 * @param delta the added or, if negative, removed amount
+	 */
+	void change(
+		final Shop shop ,
+		final Book book ,
+		final int  delta
+	)
+	{
+		if(this.countedShops.contains(shop))
+		{
+			this.add(shop, book, delta);
+		}
+	}
+
+	private void add(
+		final Shop shop ,
+		final Book book ,
+		final int  delta
+	)
+	{
+		final BookCounter bookCounter = this.books.computeIfAbsent(book, BookCounter::new);
+		final long        value       = bookCounter.price * delta;
+		bookCounter.add(delta, value);
+		this.genres.computeIfAbsent(book.genre(), genre -> new Counter()).add(delta, value);
+		this.countries.computeIfAbsent(shop.address().city().state().country(), country -> new Counter()).add(delta, value);
+		this.total.add(delta, value);
+	}
+
+	StockSummary book(final Book book)
+	{
+		return summary(this.books.get(book), book.title());
+	}
+
+	StockSummary genre(final Genre genre)
+	{
+		return summary(this.genres.get(genre), genre.name());
+	}
+
+	StockSummary country(final Country country)
+	{
+		return summary(this.countries.get(country), country.name());
+	}
+
+	InventorySummary summary()
+	{
+		return new InventorySummary(
+			this.total.quantity.sum(),
+			moneyOfCents(this.total.value.sum()),
+			summaries(this.genres, Genre::name),
+			summaries(this.countries, Country::name)
+		);
+	}
+
+	private static StockSummary summary(
+		final Counter counter,
+		final String  name
+	)
+	{
+		return counter != null
+			? counter.summary(name)
+			: new StockSummary(name, 0L, moneyOfCents(0L));
+	}
+
+	private static <K> List<StockSummary> summaries(
+		final Map<K, Counter>     counters,
+		final Function<K, String> name
+	)
+	{
+		return counters.entrySet().stream()
+			.map(entry -> entry.getValue().summary(name.apply(entry.getKey())))
+			.sorted(
+				Comparator.comparing(StockSummary::value).reversed()
+					.thenComparing(StockSummary::name)
+			)
+			.collect(toList());
+	}
+
+}
@@ -3,6 +3,8 @@ package one.microstream.demo.bookstore.data;
 
 import static one.microstream.demo.bookstore.util.ValidationUtils.requireNonBlank;
 
+import java.util.function.IntSupplier;
+
 /**
  * Feature type for all named entities, with {@link Comparable} capabilities.
  *
@@ -10,6 +12,11 @@ import static one.microstream.demo.bookstore.util.ValidationUtils.requireNonBlan
 public abstract class Named implements Comparable<Named>
 {
 	private final String name;
+	/*
+	 * Dense surrogate id, starting with 1, assigned by the owning collection when the entity is added.
+	 * 0 means not assigned (yet).
+	 */
+	private       int    id  ;
 
 	protected Named(final String name)
 	{
@@ -28,6 +35,38 @@ public abstract class Named implements Comparable<Named>
 		return this.name;
 	}
 
+	/**
+	 * Get the id of this entity.
+	 * <p>
+	 * {@link Book}s, {@link Shop}s, {@link Employee}s and {@link Customer}s
+	 * get dense ids, starting with 1, when they are added to {@link Books}, {@link Shops} or {@link Customers}.
+	 * {@link Country}s, {@link State}s and {@link City}s get theirs when they are registered in the {@link Geography}.
+	 * So they can be used as index in arrays.
+	 *
+	 * @return the id, or 0 if none was assigned
+	 */
+	public int id()
+	{
+		return this.id;
+	}
+
+	/**
+	 * Assigns the id of this entity, if it has none yet.
+	 * This is done by the owning collection while holding its write lock.
+	 *
+	 * @param idSupplier the supplier of the next free id
+	 * @return <code>true</code> if the id was assigned, <code>false</code> if this entity already had one
+	 */
+	boolean assignId(final IntSupplier idSupplier)
+	{
+		if(this.id != 0)
+		{
+			return false;
+		}
+		this.id = idSupplier.getAsInt();
+		return true;
+	}
+
 	@Override
 	public int compareTo(final Named other)
 	{
@@ -0,0 +1,155 @@
+package one.microstream.demo.bookstore.data;
+
+import java.util.Arrays;
+
+/**
+ * Columnar projection of purchases, used for analytical scans.
+ * <p>
+ * Every purchase is a row in the purchase columns, which hold the {@link Named#id() ids} of its shop and customer.
+ * The dimensions needed by the queries (the cities of shops and customers, the countries of shops)
+ * are indexed by these ids and resolved once per entity, to the ids of the {@link Geography}.
+ * So scans only touch primitive arrays instead of dereferencing the object graph of each purchase.
+ * <p>
+ * Only the columns which are scanned are held. Queries by books, employees or revenue
+ * are served by the pre-aggregated sales figures, see {@link Totals}.
+ * <p>
+ * It is not persisted but built on demand and appended to as purchases are added.
+ * It holds no references to the purchases, so they can still be evicted.
+ * <p>
+ * Note that this class doesn't need to handle concurrency in any way,
+ * since it is only used by {@link Purchases} which handles thread safety.
+ */
+class PurchaseFacts
+{
+	private final static int INITIAL_CAPACITY = 1024;
+
+	/*
+	 * Dimensions, indexed by the ids of shops and customers.
+	 * Cities and countries are referenced by their ids in the {@link Geography}, 0 marks an unresolved entity.
+	 */
+	private int[] shopCity         = new int[16];
+	private int[] shopCountry      = new int[16];
+	private int[] customerCity     = new int[INITIAL_CAPACITY];
+
+	/*
+	 * Purchase columns
+	 */
+	private int   purchaseCount    = 0;
+	private int[] purchaseShop     = new int[INITIAL_CAPACITY];
+	private int[] purchaseCustomer = new int[INITIAL_CAPACITY];
+
+	PurchaseFacts()
+	{
+		super();
+	}
+
+	/**
+	 * Appends a purchase.
+	 *
+	 * @param purchase the purchase to add
+	 */
+	void add(final Purchase purchase)
+	{
+		final int row = this.purchaseCount;
+		if(row == this.purchaseShop.length)
+		{
+			final int capacity = row * 2;
+			this.purchaseShop     = Arrays.copyOf(this.purchaseShop,     capacity);
+			this.purchaseCustomer = Arrays.copyOf(this.purchaseCustomer, capacity);
+		}
+
+		this.purchaseShop    [row] = this.shopId(purchase.shop());
+		this.purchaseCustomer[row] = this.customerId(purchase.customer());
+		this.purchaseCount++;
+	}
+
+	private int shopId(final Shop shop)
+	{
+		final int id = shop.id();
+		if(id >= this.shopCity.length)
+		{
+			final int capacity = Math.max(id + 1, this.shopCity.length * 2);
+			this.shopCity    = Arrays.copyOf(this.shopCity,    capacity);
+			this.shopCountry = Arrays.copyOf(this.shopCountry, capacity);
+		}
+		if(this.shopCity[id] == 0)
+		{
+			final City city = shop.address().city();
+			this.shopCity   [id] = city.id();
+			this.shopCountry[id] = city.state().country().id();
+		}
+		return id;
+	}
+
+	private int customerId(final Customer customer)
+	{
+		final int id = customer.id();
+		if(id >= this.customerCity.length)
+		{
+			this.customerCity = Arrays.copyOf(this.customerCity, Math.max(id + 1, this.customerCity.length * 2));
+		}
+		if(this.customerCity[id] == 0)
+		{
+			this.customerCity[id] = customer.address().city().id();
+		}
+		return id;
+	}
+
+	/**
+	 * Counts all purchases which were made by customers in foreign cities.
+	 *
+	 * @return the amount of purchases
+	 */
+	long countPurchasesOfForeigners()
+	{
+		final int[] purchaseShop     = this.purchaseShop;
+		final int[] purchaseCustomer = this.purchaseCustomer;
+		final int[] shopCity         = this.shopCity;
+		final int[] customerCity     = this.customerCity;
+
+		long count = 0L;
+		for(int row = 0, size = this.purchaseCount; row < size; row++)
+		{
+			if(customerCity[purchaseCustomer[row]] != shopCity[purchaseShop[row]])
+			{
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Counts all purchases in a specific country which were made by customers in foreign cities.
+	 *
+	 * @param country the country of the shops to filter by
+	 * @return the amount of purchases
+	 */
+	long countPurchasesOfForeigners(final Country country)
+	{
+		final int countryId = country.id();
+		if(countryId == 0)
+		{
+			return 0L;
+		}
+
+		final int[] purchaseShop     = this.purchaseShop;
+		final int[] purchaseCustomer = this.purchaseCustomer;
+		final int[] shopCity         = this.shopCity;
+		final int[] shopCountry      = this.shopCountry;
+		final int[] customerCity     = this.customerCity;
+
+		long count = 0L;
+		for(int row = 0, size = this.purchaseCount; row < size; row++)
+		{
+			final int shop = purchaseShop[row];
+			if(shopCountry[shop] == countryId
+				&& customerCity[purchaseCustomer[row]] != shopCity[shop]
+			)
+			{
+				count++;
+			}
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,304 @@
+package one.microstream.demo.bookstore.data;
+
+import static java.util.stream.Collectors.toList;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.rapidpm.dependencies.core.logger.HasLogger;
+
+import one.microstream.persistence.types.Persister;
+
+/**
+ * Asynchronous, batching ingestion of new {@link Purchase}s.
+ * <p>
+ * Submitted purchases are queued and added by a single worker thread in batches,
+ * see {@link Purchases#addAll(java.util.Collection, Persister)}.
+ * So the changes of a whole batch are stored at once, instead of one store per purchase.
+ * Optionally the purchased books are reserved in the shops' inventories as well,
+ * see {@link Purchases#addAllAndReserve(java.util.Collection, Persister)}.
+ * <p>
+ * A batch is complete when it reaches the maximum batch size,
+ * or when the maximum delay since its first purchase has elapsed.
+ * The queue is bounded, {@link #submit(Purchase)} blocks if it is full,
+ * so producers can't outrun the storage.
+ * <p>
+ * A batch is not added all or nothing. If single purchases can't be added, e.g. because of insufficient stock,
+ * only their futures are completed exceptionally, the other purchases of the batch are added nevertheless.
+ * If the purchases of a year can't be stored, they are removed from memory again, so the in-memory state
+ * always matches the storage. Failed purchases are not retried, the submitter decides whether to resubmit them.
+ * <p>
+ * All operations on this type are thread safe.
+ *
+ * @see Purchases#addAll(java.util.Collection, Persister)
+ */
+public class PurchaseIngestor implements AutoCloseable, HasLogger
+{
+	/**
+	 * A queued purchase and the future which is completed when it is stored.
+	 */
+	private static class Entry
+	{
+		final Purchase                purchase;
+		final CompletableFuture<Void> future  ;
+
+		Entry(final Purchase purchase)
+		{
+			super();
+			this.purchase = purchase;
+			this.future   = new CompletableFuture<>();
+		}
+	}
+
+
+	public final static int      DEFAULT_QUEUE_CAPACITY = 10_000;
+	public final static int      DEFAULT_MAX_BATCH_SIZE = 1_000;
+	public final static Duration DEFAULT_MAX_DELAY      = Duration.ofMillis(5);
+
+	private final Purchases            purchases    ;
+	private final Persister            persister    ;
+	private final boolean              reserve      ;
+	private final BlockingQueue<Entry> queue        ;
+	private final int                  maxBatchSize ;
+	private final long                 maxDelayNanos;
+	private final Thread               worker       ;
+	private volatile boolean           closed       ;
+
+	/**
+	 * Creates and starts a new ingestor with the default settings, which doesn't reserve the purchased books.
+	 *
+	 * @param purchases the purchases to add to
+	 * @param persister the persister to store the purchases with
+	 */
+	public PurchaseIngestor(
+		final Purchases purchases,
+		final Persister persister
+	)
+	{
+		this(purchases, persister, false);
+	}
+
+	/**
+	 * Creates and starts a new ingestor with the default settings.
+	 *
+	 * @param purchases the purchases to add to
+	 * @param persister the persister to store the purchases with
+	 * @param reserve if the purchased books are reserved in the shops' inventories
+	 */
+	public PurchaseIngestor(
+		final Purchases purchases,
+		final Persister persister,
+		final boolean   reserve
+	)
+	{
+		this(
+			purchases,
+			persister,
+			reserve,
+			DEFAULT_QUEUE_CAPACITY,
+			DEFAULT_MAX_BATCH_SIZE,
+			DEFAULT_MAX_DELAY
+		);
+	}
+
+	/**
+	 * Creates and starts a new ingestor.
+	 *
+	 * @param purchases the purchases to add to
+	 * @param persister the persister to store the purchases with
+	 * @param reserve if the purchased books are reserved in the shops' inventories
+	 * @param queueCapacity the maximum number of queued purchases
+	 * @param maxBatchSize the maximum number of purchases which are stored at once
+	 * @param maxDelay the maximum time to wait for further purchases of a batch
+	 */
+	public PurchaseIngestor(
+		final Purchases purchases    ,
+		final Persister persister    ,
+		final boolean   reserve      ,
+		final int       queueCapacity,
+		final int       maxBatchSize ,
+		final Duration  maxDelay
+	)
+	{
+		super();
+		if(maxBatchSize < 1)
+		{
+			throw new IllegalArgumentException("maxBatchSize < 1: " + maxBatchSize);
+		}
+		this.purchases     = purchases;
+		this.persister     = persister;
+		this.reserve       = reserve;
+		this.queue         = new ArrayBlockingQueue<>(queueCapacity);
+		this.maxBatchSize  = maxBatchSize;
+		this.maxDelayNanos = maxDelay.toNanos();
+		this.worker        = new Thread(this::run, "PurchaseIngestor");
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+
+	/**
+	 * Queues a new purchase, waits if the queue is full.
+	 *
+	 * @param purchase the new purchase
+	 * @return a future which is completed when the purchase is stored,
+	 * or completed exceptionally if adding or storing it failed
+	 * @throws IllegalStateException if this ingestor is closed
+	 */
+	public CompletableFuture<Void> submit(final Purchase purchase)
+	{
+		if(this.closed)
+		{
+			throw new IllegalStateException("Ingestor is closed");
+		}
+
+		final Entry entry = new Entry(purchase);
+		try
+		{
+			this.queue.put(entry);
+		}
+		catch(final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			entry.future.completeExceptionally(e);
+			return entry.future;
+		}
+
+		/*
+		 * If the ingestor was closed meanwhile, the worker may already be gone.
+		 * Whoever removes the entry from the queue is responsible for it.
+		 */
+		if(this.closed && this.queue.remove(entry))
+		{
+			entry.future.completeExceptionally(new IllegalStateException("Ingestor is closed"));
+		}
+		return entry.future;
+	}
+
+	/**
+	 * Stops accepting new purchases, and waits until all queued ones are stored.
+	 */
+	@Override
+	public void close()
+	{
+		this.closed = true;
+		try
+		{
+			this.worker.join();
+		}
+		catch(final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		final List<Entry> remaining = new ArrayList<>();
+		this.queue.drainTo(remaining);
+		remaining.forEach(entry ->
+			entry.future.completeExceptionally(new IllegalStateException("Ingestor is closed"))
+		);
+	}
+
+	private void run()
+	{
+		final List<Entry> batch = new ArrayList<>(this.maxBatchSize);
+		while(!this.closed || !this.queue.isEmpty())
+		{
+			try
+			{
+				this.collect(batch);
+			}
+			catch(final InterruptedException e)
+			{
+				this.closed = true;
+			}
+			if(batch.size() > 0)
+			{
+				this.ingest(batch);
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Collects the next batch, waits for the first entry and at most the maximum delay for further ones.
+	 */
+	private void collect(final List<Entry> batch) throws InterruptedException
+	{
+		final Entry first = this.queue.poll(100L, TimeUnit.MILLISECONDS);
+		if(first == null)
+		{
+			return;
+		}
+		batch.add(first);
+
+		final long deadline = System.nanoTime() + this.maxDelayNanos;
+		while(batch.size() < this.maxBatchSize)
+		{
+			this.queue.drainTo(batch, this.maxBatchSize - batch.size());
+			final long remaining = deadline - System.nanoTime();
+			if(remaining <= 0L || batch.size() >= this.maxBatchSize)
+			{
+				break;
+			}
+			final Entry next = this.queue.poll(remaining, TimeUnit.NANOSECONDS);
+			if(next == null)
+			{
+				break;
+			}
+			batch.add(next);
+		}
+	}
+
+	/**
+	 * Adds and stores a batch and completes the futures of its entries.
+	 */
+	private void ingest(final List<Entry> batch)
+	{
+		final List<Purchase> purchases = batch.stream().map(entry -> entry.purchase).collect(toList());
+		try
+		{
+			if(this.reserve)
+			{
+				this.purchases.addAllAndReserve(purchases, this.persister);
+			}
+			else
+			{
+				this.purchases.addAll(purchases, this.persister);
+			}
+			batch.forEach(entry -> entry.future.complete(null));
+		}
+		catch(final PurchasesNotAddedException e)
+		{
+			this.logger().severe("Error ingesting " + e.purchases().size() + " of " + batch.size() + " purchases", e);
+			/*
+			 * The other purchases of the batch were added.
+			 */
+			final Set<Purchase> notAdded = Collections.newSetFromMap(new IdentityHashMap<>());
+			notAdded.addAll(e.purchases());
+			batch.forEach(entry ->
+			{
+				if(notAdded.contains(entry.purchase))
+				{
+					entry.future.completeExceptionally(e);
+				}
+				else
+				{
+					entry.future.complete(null);
+				}
+			});
+		}
+		catch(final RuntimeException e)
+		{
+			this.logger().severe("Error ingesting purchases", e);
+			batch.forEach(entry -> entry.future.completeExceptionally(e));
+		}
+	}
+
+}
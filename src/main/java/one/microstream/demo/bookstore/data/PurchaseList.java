@@ -0,0 +1,125 @@
+package one.microstream.demo.bookstore.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Append-only list of purchases, which is persisted in fixed-size chunks.
+ * <p>
+ * A growing {@link ArrayList} has to be stored completely after each addition,
+ * so the amount of written data grows with the size of the list.
+ * This list consists of a small head (this object and the array of chunks) and the chunks,
+ * an addition only changes the last chunk and the head.
+ * <p>
+ * The first chunk grows until it reaches the chunk size, so short lists don't waste any space.
+ * <p>
+ * Note that this class doesn't need to handle concurrency in any way,
+ * since it is only used by {@link Purchases} which handles thread safety.
+ */
+class PurchaseList
+{
+	private final static int CHUNK_SIZE             = 256;
+	private final static int INITIAL_CHUNK_CAPACITY = 8;
+
+	private Purchase[][] chunks = new Purchase[4][];
+	private int          size   = 0;
+
+	PurchaseList()
+	{
+		super();
+	}
+
+	/**
+	 * Appends a purchase to the end of this list.
+	 *
+	 * @param purchase the purchase to add
+	 * @param changedObjects collector for the objects which have to be stored
+	 * @param rollback records how to revert the addition
+	 */
+	void add(
+		final Purchase           purchase      ,
+		final Collection<Object> changedObjects,
+		final Rollback           rollback
+	)
+	{
+		final Purchase[][] previousChunks = this.chunks;
+		final int          chunkIndex     = this.size / CHUNK_SIZE;
+		final int          index          = this.size % CHUNK_SIZE;
+		if(chunkIndex == this.chunks.length)
+		{
+			this.chunks = Arrays.copyOf(this.chunks, chunkIndex * 2);
+		}
+
+		final Purchase[] previousChunk = this.chunks[chunkIndex];
+		Purchase[]       chunk         = previousChunk;
+		if(chunk == null || index == chunk.length)
+		{
+			chunk = chunk == null
+				? new Purchase[chunkIndex == 0 ? INITIAL_CHUNK_CAPACITY : CHUNK_SIZE]
+				: Arrays.copyOf(chunk, Math.min(chunk.length * 2, CHUNK_SIZE));
+			this.chunks[chunkIndex] = chunk;
+			changedObjects.add(this.chunks);
+		}
+
+		chunk[index] = purchase;
+		this.size++;
+		changedObjects.add(chunk);
+		changedObjects.add(this);
+
+		final Purchase[] addedTo = chunk;
+		rollback.record(() ->
+		{
+			addedTo[index] = null;
+			if(chunkIndex < previousChunks.length)
+			{
+				previousChunks[chunkIndex] = previousChunk;
+			}
+			this.chunks = previousChunks;
+			this.size--;
+		});
+	}
+
+	/**
+	 * @return the number of purchases in this list
+	 */
+	int size()
+	{
+		return this.size;
+	}
+
+	/**
+	 * Performs an action for all purchases, in the order they were added.
+	 *
+	 * @param action the action to perform
+	 */
+	void forEach(final Consumer<? super Purchase> action)
+	{
+		for(int i = 0, size = this.size; i < size; i++)
+		{
+			action.accept(this.chunks[i / CHUNK_SIZE][i % CHUNK_SIZE]);
+		}
+	}
+
+	/**
+	 * @return a copy of this list's purchases
+	 */
+	List<Purchase> toList()
+	{
+		final List<Purchase> list = new ArrayList<>(this.size);
+		this.forEach(list::add);
+		return list;
+	}
+
+	/**
+	 * Removes all purchases from this list, without storing it.
+	 */
+	void clear()
+	{
+		this.chunks = new Purchase[4][];
+		this.size   = 0;
+	}
+
+}
@@ -2,33 +2,41 @@
 package one.microstream.demo.bookstore.data;
 
 import static java.util.stream.Collectors.groupingBy;
-import static java.util.stream.Collectors.summingInt;
 import static java.util.stream.Collectors.toList;
 import static one.microstream.demo.bookstore.util.CollectionUtils.ensureParallelStream;
-import static one.microstream.demo.bookstore.util.CollectionUtils.maxKey;
-import static one.microstream.demo.bookstore.util.CollectionUtils.summingMonetaryAmount;
 import static one.microstream.demo.bookstore.util.LazyUtils.clearIfStored;
-import static org.javamoney.moneta.function.MonetaryFunctions.summarizingMonetary;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.IntSummaryStatistics;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 import javax.money.MonetaryAmount;
 
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.Range;
 
 import one.microstream.demo.bookstore.BookStoreDemo;
-import one.microstream.demo.bookstore.util.concurrent.ReadWriteLocked;
-import one.microstream.demo.bookstore.util.concurrent.ReadWriteLockedStriped;
+import one.microstream.demo.bookstore.util.concurrent.ReadWriteLockedKeyed;
 import one.microstream.persistence.types.Persister;
 import one.microstream.reference.Lazy;
 import one.microstream.storage.embedded.types.EmbeddedStorageManager;
@@ -39,26 +47,105 @@ import one.microstream.storage.embedded.types.EmbeddedStorageManager;
  * This type is used to read and write the {@link Purchase}s and statistics thereof.
  * <p>
  * All operations on this type are thread safe.
+ * Every year has its own lock, so operations on different years never contend.
+ * Purchases of the same year are added concurrently as well, only holding the year's read lock, and stored together.
+ * Batches of purchases, see {@link #addAll(Collection)}, are added under the write lock and stored at once.
+ * <p>
+ * Adding purchases doesn't change the shops' {@link Inventory}s, unless the books are reserved explicitly,
+ * see {@link #addAndReserve(Purchase, Persister)} and {@link #addAllAndReserve(Collection, Persister)}.
+ * <p>
+ * Results of the analytical queries are cached per year, until purchases are added to the year.
  *
  * @see Data#purchases()
- * @see ReadWriteLocked
+ * @see ReadWriteLockedKeyed
  */
-public class Purchases extends ReadWriteLockedStriped
+public class Purchases extends ReadWriteLockedKeyed
 {
 	/**
-	 * This class hold all purchases made in a specific year.
+	 * Incrementally maintained sales figures, used by the analytical queries.
+	 * <p>
+	 * Revenue is held as primitive cents and only converted to {@link MonetaryAmount}s when queried.
 	 * <p>
 	 * Note that this class doesn't need to handle concurrency in any way,
 	 * since it is only used by the {@link Default} implementation which handles thread safety.
 	 */
+	private static class SalesFigures
+	{
+		final Totals<Book>     bookSales       = new Totals<>();
+		final Totals<Shop>     shopRevenue     = new Totals<>();
+		final Totals<Employee> employeeRevenue = new Totals<>();
+
+		SalesFigures()
+		{
+			super();
+		}
+
+		/**
+		 * Adds the sold amounts and the revenue of a purchase.
+		 *
+		 * @param purchase the purchase to add
+		 * @param changedObjects collector for the objects which have to be stored
+		 * @param rollback records how to revert the addition
+		 */
+		void add(
+			final Purchase           purchase      ,
+			final Collection<Object> changedObjects,
+			final Rollback           rollback
+		)
+		{
+			long revenue = 0L;
+			for(final PurchaseItem item : purchase.itemsList())
+			{
+				this.bookSales.add(item.book(), item.amount(), changedObjects, rollback);
+				revenue += BookStoreDemo.cents(item.price()) * item.amount();
+			}
+			this.shopRevenue    .add(purchase.shop()    , revenue, changedObjects, rollback);
+			this.employeeRevenue.add(purchase.employee(), revenue, changedObjects, rollback);
+		}
+
+	}
+
+
+	/**
+	 * This class hold all purchases made in a specific year.
+	 * <p>
+	 * Purchases may be added concurrently, while the {@link Purchases} hold the year's read lock:
+	 * <ul>
+	 * <li>New keys are added to the maps atomically, the maps are concurrent.</li>
+	 * <li>Every purchase list is guarded by its own monitor, which is held while it is modified or copied.
+	 * So queries see a consistent view per key.</li>
+	 * <li>The sales figures and the purchase facts are guarded by the monitor of this object.</li>
+	 * <li>No monitor is held while a purchase is stored, the changes of concurrent adds are stored together,
+	 * while no purchase is added, see {@link GroupCommit}.</li>
+	 * </ul>
+	 * Operations which need exclusive access, like {@link #clear()}, are executed under the year's write lock.
+	 */
 	private static class YearlyPurchases
 	{
 		/*
 		 * Multiple maps holding references to the purchases, for a faster lookup.
 		 */
-		final Map<Shop,     Lazy<List<Purchase>>> shopToPurchases     = new HashMap<>(128);
-		final Map<Employee, Lazy<List<Purchase>>> employeeToPurchases = new HashMap<>(512);
-		final Map<Customer, Lazy<List<Purchase>>> customerToPurchases = new HashMap<>(1024);
+		final Map<Shop,     Lazy<PurchaseList>>   shopToPurchases     = new ConcurrentHashMap<>(128);
+		final Map<Employee, Lazy<PurchaseList>>   employeeToPurchases = new ConcurrentHashMap<>(512);
+		final Map<Customer, Lazy<PurchaseList>>   customerToPurchases = new ConcurrentHashMap<>(1024);
+
+		/*
+		 * The purchases per month, so queries for short ranges of time only load the affected months.
+		 */
+		final Map<Integer,  Lazy<PurchaseList>>   monthToPurchases    = new ConcurrentHashMap<>(16);
+
+		/*
+		 * Sales figures, in total and per country of the shops.
+		 * They are part of this object and not lazy, so the lists above don't have to be loaded.
+		 */
+		final SalesFigures                        salesFigures          = new SalesFigures();
+		final Map<Country, SalesFigures>          countryToSalesFigures = new HashMap<>(16);
+
+		/*
+		 * Columnar projection of all purchases, built on demand.
+		 * Transient means it is not persisted by MicroStream.
+		 */
+		private transient PurchaseFacts           facts;
 
 		YearlyPurchases()
 		{
@@ -66,67 +153,256 @@ public class Purchases extends ReadWriteLockedStriped
 		}
 
 		/**
-		 * Adds a purchase to all collections used by this class.
+		 * Adds a purchase to all collections used by this class, without storing it.
+		 * <p>
+		 * The caller has to hold the year's read lock, purchases of the year may be added concurrently.
+		 * Missing lists are created, every list is only locked while the purchase is appended to it,
+		 * and the sales figures are locked while they are updated.
+		 * The changed objects are stored afterwards by the caller, see {@link GroupCommit}.
 		 *
 		 * @param purchase the purchase to add
+		 * @param persister the persister to store new lists with
+		 * @param changedObjects collector for the objects which have to be stored
+		 * @param rollback records how to revert the addition, every inverse is executed under the monitor
+		 * which guards the modified object
 		 */
-		YearlyPurchases add(
-			final Purchase purchase,
-			final Persister persister
+		void add(
+			final Purchase           purchase      ,
+			final Persister          persister     ,
+			final Collection<Object> changedObjects,
+			final Rollback           rollback
 		)
 		{
-			final List<Object> changedObjects = new ArrayList<>();
-			addToMap(this.shopToPurchases,     purchase.shop(),     purchase, changedObjects);
-			addToMap(this.employeeToPurchases, purchase.employee(), purchase, changedObjects);
-			addToMap(this.customerToPurchases, purchase.customer(), purchase, changedObjects);
-			if(persister != null && changedObjects.size() > 0)
+			append(list(this.shopToPurchases,     purchase.shop(),     persister, changedObjects, rollback), purchase, changedObjects, rollback);
+			append(list(this.employeeToPurchases, purchase.employee(), persister, changedObjects, rollback), purchase, changedObjects, rollback);
+			append(list(this.customerToPurchases, purchase.customer(), persister, changedObjects, rollback), purchase, changedObjects, rollback);
+			append(list(this.monthToPurchases,    purchase.timestamp().getMonthValue(), persister, changedObjects, rollback), purchase, changedObjects, rollback);
+
+			synchronized(this)
 			{
-				persister.storeAll(changedObjects);
+				final Rollback guarded = rollback.guardedBy(this);
+				this.addSalesFigures(purchase, changedObjects, guarded);
+				if(this.facts != null)
+				{
+					this.facts.add(purchase);
+					guarded.record(() -> this.facts = null);
+				}
+			}
+		}
+
+		/**
+		 * Gets the purchase list of a key, it is created if necessary.
+		 * <p>
+		 * A new list is stored before it is put into the map, because other writers may append to it
+		 * as soon as it is visible, and their changes may be stored before the map is.
+		 *
+		 * @param <K> the key type
+		 * @param map the collection
+		 * @param key the key
+		 * @param persister the persister to store a new list with
+		 * @param changedObjects collector for the objects which have to be stored
+		 * @param rollback records how to revert the creation of a new list
+		 * @return the purchase list of the key
+		 */
+		private static <K> PurchaseList list(
+			final Map<K, Lazy<PurchaseList>> map           ,
+			final K                          key           ,
+			final Persister                  persister     ,
+			final Collection<Object>         changedObjects,
+			final Rollback                   rollback
+		)
+		{
+			final Lazy<PurchaseList> lazy = map.get(key);
+			if(lazy != null)
+			{
+				return load(lazy);
+			}
+			return load(map.computeIfAbsent(key, k ->
+			{
+				final Lazy<PurchaseList> newLazy = Lazy.Reference(new PurchaseList());
+				persister.store(newLazy);
+				changedObjects.add(map);
+				rollback.record(() -> map.remove(k));
+				return newLazy;
+			}));
+		}
+
+		/**
+		 * Appends a purchase to a list, guarded by the list's monitor.
+		 *
+		 * @param list the list
+		 * @param purchase the purchase to add
+		 * @param changedObjects collector for the objects which have to be stored
+		 * @param rollback records how to revert the addition
+		 */
+		private static void append(
+			final PurchaseList       list          ,
+			final Purchase           purchase      ,
+			final Collection<Object> changedObjects,
+			final Rollback           rollback
+		)
+		{
+			synchronized(list)
+			{
+				list.add(purchase, changedObjects, rollback.guardedBy(list));
+			}
+		}
+
+		/**
+		 * Adds purchases to all collections used by this class, without storing them.
+		 * <p>
+		 * The caller has to hold the year's write lock, so no purchases are added or queried meanwhile.
+		 *
+		 * @param purchases the purchases to add
+		 * @param changedObjects collector for the objects which have to be stored
+		 * @param rollback records how to revert the additions, if they could not be stored
+		 * @return this
+		 */
+		YearlyPurchases addAll(
+			final Collection<Purchase> purchases     ,
+			final Collection<Object>   changedObjects,
+			final Rollback             rollback
+		)
+		{
+			if(this.facts != null)
+			{
+				/*
+				 * The facts are transient, they are just built again on demand.
+				 */
+				rollback.record(() -> this.facts = null);
+			}
+			for(final Purchase purchase : purchases)
+			{
+				addTo(this.shopToPurchases,     purchase.shop(),     purchase, changedObjects, rollback);
+				addTo(this.employeeToPurchases, purchase.employee(), purchase, changedObjects, rollback);
+				addTo(this.customerToPurchases, purchase.customer(), purchase, changedObjects, rollback);
+				addTo(this.monthToPurchases,    purchase.timestamp().getMonthValue(), purchase, changedObjects, rollback);
+				this.addSalesFigures(purchase, changedObjects, rollback);
+				if(this.facts != null)
+				{
+					this.facts.add(purchase);
+				}
 			}
 			return this;
 		}
 
 		/**
-		 * Adds a purchase to a map with a list as values.
+		 * Adds a purchase to the list of a key.
 		 * If no list is present for the given key, it will be created.
 		 *
 		 * @param <K> the key type
 		 * @param map the collection
 		 * @param key the key
 		 * @param purchase the purchase to add
+		 * @param changedObjects collector for the objects which have to be stored
+		 * @param rollback records how to revert the addition
 		 */
-		private static <K> void addToMap(
-			final Map<K, Lazy<List<Purchase>>> map,
-			final K key,
-			final Purchase purchase,
-			final List<Object> changedObjects
+		private static <K> void addTo(
+			final Map<K, Lazy<PurchaseList>> map           ,
+			final K                          key           ,
+			final Purchase                   purchase      ,
+			final Collection<Object>         changedObjects,
+			final Rollback                   rollback
 		)
 		{
-			Lazy<List<Purchase>> lazy = map.get(key);
+			Lazy<PurchaseList> lazy = map.get(key);
 			if(lazy == null)
 			{
-				final ArrayList<Purchase> list = new ArrayList<>(64);
-				list.add(purchase);
-				lazy = Lazy.Reference(list);
-				map.put(key, lazy);
+				map.put(key, lazy = Lazy.Reference(new PurchaseList()));
 				changedObjects.add(map);
+				rollback.record(() -> map.remove(key));
 			}
-			else
+			load(lazy).add(purchase, changedObjects, rollback);
+		}
+
+		/**
+		 * Copies the purchase list of a lazy reference, guarded by the list's monitor.
+		 *
+		 * @param lazy the lazy reference, may be <code>null</code>
+		 * @return a copy of the list or <code>null</code>
+		 */
+		private static List<Purchase> copy(
+			final Lazy<PurchaseList> lazy
+		)
+		{
+			final PurchaseList list = load(lazy);
+			if(list == null)
 			{
-				final List<Purchase> list = lazy.get();
-				list.add(purchase);
-				changedObjects.add(list);
+				return null;
+			}
+			synchronized(list)
+			{
+				return list.toList();
 			}
 		}
 
+		/**
+		 * Adds a purchase to the total sales figures and the ones of the shop's country.
+		 *
+		 * @param purchase the purchase to add
+		 * @param changedObjects collector for the objects which have to be stored
+		 * @param rollback records how to revert the addition
+		 */
+		private void addSalesFigures(
+			final Purchase           purchase      ,
+			final Collection<Object> changedObjects,
+			final Rollback           rollback
+		)
+		{
+			final Country country             = purchase.shop().address().city().state().country();
+			SalesFigures  countrySalesFigures = this.countryToSalesFigures.get(country);
+			if(countrySalesFigures == null)
+			{
+				countrySalesFigures = new SalesFigures();
+				this.countryToSalesFigures.put(country, countrySalesFigures);
+				changedObjects.add(this.countryToSalesFigures);
+				rollback.record(() -> this.countryToSalesFigures.remove(country));
+			}
+
+			this.salesFigures  .add(purchase, changedObjects, rollback);
+			countrySalesFigures.add(purchase, changedObjects, rollback);
+		}
+
+		/**
+		 * Executes a function with the total sales figures.
+		 *
+		 * @param <T> the return type
+		 * @param function computing function
+		 * @return the computed result
+		 */
+		synchronized <T> T computeSalesFigures(
+			final Function<SalesFigures, T> function
+		)
+		{
+			return function.apply(this.salesFigures);
+		}
+
+		/**
+		 * Executes a function with the sales figures of a country.
+		 *
+		 * @param <T> the return type
+		 * @param country the country of the shops
+		 * @param function computing function, gets <code>null</code> if nothing was sold in the country
+		 * @return the computed result
+		 */
+		synchronized <T> T computeSalesFigures(
+			final Country                   country ,
+			final Function<SalesFigures, T> function
+		)
+		{
+			return function.apply(this.countryToSalesFigures.get(country));
+		}
+
 		/**
 		 * Clears all {@link Lazy} references used by this type
 		 */
-		void clear()
+		synchronized void clear()
 		{
+			this.facts = null;
 			clearMap(this.shopToPurchases);
 			clearMap(this.employeeToPurchases);
 			clearMap(this.customerToPurchases);
+			clearMap(this.monthToPurchases);
 		}
 
 		/**
@@ -136,14 +412,109 @@ public class Purchases extends ReadWriteLockedStriped
 		 * @param map the map to clear
 		 */
 		private static <K> void clearMap(
-			final Map<K, Lazy<List<Purchase>>> map
+			final Map<K, Lazy<PurchaseList>> map
 		)
 		{
 			map.values().forEach(lazy ->
-				clearIfStored(lazy).ifPresent(List::clear)
+				clearIfStored(lazy).ifPresent(PurchaseList::clear)
 			);
 		}
 
+		/**
+		 * Executes a function with the columnar projection of all purchases, if it is already built.
+		 *
+		 * @param <T> the return type
+		 * @param function computing function
+		 * @return the computed result, or an empty {@link Optional} if the facts are not built yet
+		 */
+		synchronized <T> Optional<T> computeFacts(
+			final Function<PurchaseFacts, T> function
+		)
+		{
+			return this.facts == null
+				? Optional.empty()
+				: Optional.of(function.apply(this.facts));
+		}
+
+		/**
+		 * Executes a function with the columnar projection of all purchases, it is built if necessary.
+		 * This loads all purchases once.
+		 * <p>
+		 * The caller has to hold the year's write lock, so no purchases are added meanwhile.
+		 *
+		 * @param <T> the return type
+		 * @param function computing function
+		 * @return the computed result
+		 */
+		synchronized <T> T buildAndComputeFacts(
+			final Function<PurchaseFacts, T> function
+		)
+		{
+			if(this.facts == null)
+			{
+				final PurchaseFacts facts = new PurchaseFacts();
+				this.shopToPurchases.values().forEach(
+					lazy -> load(lazy).forEach(facts::add)
+				);
+				this.facts = facts;
+			}
+			return function.apply(this.facts);
+		}
+
+		/**
+		 * Performs an action for all loaded purchase lists.
+		 *
+		 * @param action the action to perform
+		 */
+		void forEachLoadedList(final Consumer<Lazy<?>> action)
+		{
+			Stream.of(
+				this.shopToPurchases,
+				this.employeeToPurchases,
+				this.customerToPurchases,
+				this.monthToPurchases
+			)
+			.flatMap(map -> map.values().stream())
+			.filter(lazy -> lazy.isLoaded())
+			.forEach(action);
+		}
+
+		/**
+		 * @return parallel stream with all purchases
+		 */
+		Stream<Purchase> all()
+		{
+			return this.shopToPurchases.values().parallelStream()
+				.flatMap(lazy -> ensureParallelStream(copy(lazy)));
+		}
+
+		/**
+		 * Collects the purchases of a range of months.
+		 *
+		 * @param firstMonth the first month, 1-12
+		 * @param lastMonth the last month, inclusive
+		 * @param predicate the predicate to filter by
+		 * @param result collector for the matching purchases
+		 */
+		void byMonths(
+			final int                 firstMonth,
+			final int                 lastMonth ,
+			final Predicate<Purchase> predicate ,
+			final List<Purchase>      result
+		)
+		{
+			for(int month = firstMonth; month <= lastMonth; month++)
+			{
+				final List<Purchase> purchases = copy(this.monthToPurchases.get(month));
+				if(purchases != null)
+				{
+					purchases.stream()
+						.filter(predicate)
+						.forEach(result::add);
+				}
+			}
+		}
+
 		/**
 		 * @param shop the shop to filter by
 		 * @return parallel stream with purchases made in a specific shop
@@ -153,7 +524,7 @@ public class Purchases extends ReadWriteLockedStriped
 		)
 		{
 			return ensureParallelStream(
-				Lazy.get(this.shopToPurchases.get(shop))
+				copy(this.shopToPurchases.get(shop))
 			);
 		}
 
@@ -167,7 +538,19 @@ public class Purchases extends ReadWriteLockedStriped
 		{
 			return this.shopToPurchases.entrySet().parallelStream()
 				.filter(e -> shopSelector.test(e.getKey()))
-				.flatMap(e -> ensureParallelStream(Lazy.get(e.getValue())));
+				.flatMap(e -> ensureParallelStream(copy(e.getValue())));
+		}
+
+		/**
+		 * @param shops the shops to filter by
+		 * @return parallel stream with purchases made in the given shops
+		 */
+		Stream<Purchase> byShops(
+			final Collection<Shop> shops
+		)
+		{
+			return shops.parallelStream()
+				.flatMap(shop -> ensureParallelStream(copy(this.shopToPurchases.get(shop))));
 		}
 
 		/**
@@ -179,7 +562,7 @@ public class Purchases extends ReadWriteLockedStriped
 		)
 		{
 			return ensureParallelStream(
-				Lazy.get(this.employeeToPurchases.get(employee))
+				copy(this.employeeToPurchases.get(employee))
 			);
 		}
 
@@ -192,97 +575,563 @@ public class Purchases extends ReadWriteLockedStriped
 		)
 		{
 			return ensureParallelStream(
-				Lazy.get(this.customerToPurchases.get(customer))
+				copy(this.customerToPurchases.get(customer))
 			);
 		}
 
 	}
 	
 	
+	/**
+	 * Number of {@link Lazy} references which were loaded by this type, see {@link #load(Lazy)}.
+	 * It is runtime information only, and there is only one instance of this type.
+	 */
+	private final static LongAdder LOAD_COUNT = new LongAdder();
+
+	/**
+	 * Gets the content of a {@link Lazy} reference and counts it if it has to be loaded.
+	 *
+	 * @param <T> the content type
+	 * @param lazy the reference, may be <code>null</code>
+	 * @return the content or <code>null</code>
+	 */
+	private static <T> T load(final Lazy<T> lazy)
+	{
+		if(lazy == null)
+		{
+			return null;
+		}
+		if(!lazy.isLoaded())
+		{
+			LOAD_COUNT.increment();
+		}
+		return lazy.get();
+	}
+
+	/**
+	 * Gets the number of {@link Lazy} references which had to be loaded since the start of the application.
+	 *
+	 * @return the number of loads
+	 */
+	static long loadCount()
+	{
+		return LOAD_COUNT.sum();
+	}
+
+
 	/**
 	 * Map with {@link YearlyPurchases}, indexed by the year, of course.
 	 */
 	private final Map<Integer, Lazy<YearlyPurchases>> yearlyPurchases = new ConcurrentHashMap<>(32);
 
+	/*
+	 * Cached results of the analytical queries.
+	 * Transient means it is not persisted by MicroStream, but created on demand.
+	 */
+	private transient volatile ResultCache            resultCache;
+
+	/*
+	 * Stores the purchases which are added concurrently together.
+	 * Transient means it is not persisted by MicroStream, but created on demand.
+	 */
+	private transient volatile GroupCommit            groupCommit;
+
 	public Purchases()
 	{
 		super();
 	}
-	
+
+	private ResultCache resultCache()
+	{
+		/*
+		 * Double-checked locking to reduce the overhead of acquiring a lock
+		 * by testing the locking criterion.
+		 * The field (this.resultCache) has to be volatile.
+		 */
+		ResultCache resultCache = this.resultCache;
+		if(resultCache == null)
+		{
+			synchronized(this)
+			{
+				if((resultCache = this.resultCache) == null)
+				{
+					resultCache = this.resultCache = new ResultCache();
+				}
+			}
+		}
+		return resultCache;
+	}
+
+	private GroupCommit groupCommit()
+	{
+		/*
+		 * Double-checked locking to reduce the overhead of acquiring a lock
+		 * by testing the locking criterion.
+		 * The field (this.groupCommit) has to be volatile.
+		 */
+		GroupCommit groupCommit = this.groupCommit;
+		if(groupCommit == null)
+		{
+			synchronized(this)
+			{
+				if((groupCommit = this.groupCommit) == null)
+				{
+					groupCommit = this.groupCommit = new GroupCommit();
+				}
+			}
+		}
+		return groupCommit;
+	}
+
+	/**
+	 * Gets a cached list result or computes it, see {@link ResultCache}.
+	 * Modifications to the returned list are not reflected to the cache.
+	 */
+	private <T> List<T> cachedList(
+		final String            query    ,
+		final int               year     ,
+		final Object            parameter,
+		final int               limit    ,
+		final Supplier<List<T>> supplier
+	)
+	{
+		return new ArrayList<>(this.resultCache().get(
+			query,
+			year,
+			parameter,
+			limit,
+			() -> List.copyOf(supplier.get())
+		));
+	}
+
+	/**
+	 * Gets the statistics of the cache for the results of the analytical queries.
+	 * <p>
+	 * The results of bestseller lists, employees of the year and purchases of foreigners are cached,
+	 * until purchases are added to the respective year.
+	 *
+	 * @return the cache statistics
+	 */
+	public CacheStats resultCacheStats()
+	{
+		return this.resultCache().stats();
+	}
+	
+	/**
+	 * This method is used exclusively by the {@link RandomDataGenerator}
+	 * and it's not published by the {@link Purchases} interface.
+	 */
+	Set<Customer> init(
+		final int year,
+		final List<Purchase> purchases,
+		final Persister persister
+	)
+	{
+		return this.write(year, () ->
+		{
+			/*
+			 * The new object graph is stored as a whole, so the changed objects don't have to be collected.
+			 */
+			final YearlyPurchases yearlyPurchases = new YearlyPurchases().addAll(
+				purchases,
+				Collections.newSetFromMap(new IdentityHashMap<>()),
+				Rollback.NONE
+			);
+
+			final Lazy<YearlyPurchases> lazy = this.putYearlyPurchases(year, yearlyPurchases, persister);
+
+			final Set<Customer> customers = new HashSet<>(yearlyPurchases.customerToPurchases.keySet());
+
+			yearlyPurchases.clear();
+			lazy.clear();
+
+			return customers;
+		});
+	}
+	
+	/**
+	 * Adds a new purchase and stores it with the {@link BookStoreDemo}'s {@link EmbeddedStorageManager}.
+	 * <p>
+	 * This is a synonym for:<pre>this.add(purchase, BookStoreDemo.getInstance().storageManager())</pre>
+	 *
+	 * @param purchase the new purchase
+	 */
+	public void add(final Purchase purchase)
+	{
+		this.add(purchase, BookStoreDemo.getInstance().storageManager());
+	}
+
+	/**
+	 * Adds a new purchase and stores it with the given persister.
+	 * <p>
+	 * The shop's {@link Inventory} is not changed, see {@link #addAndReserve(Purchase, Persister)}.
+	 * <p>
+	 * If the purchase can't be stored, it is removed from memory again. Purchases which are added concurrently
+	 * are stored together, so they fail and are removed together as well.
+	 *
+	 * @param purchase the new purchase
+	 * @param persister the persister to store it with
+	 * @throws RuntimeException if the purchase could not be stored, then it is not added
+	 * @see #add(Purchase)
+	 */
+	public void add(
+		final Purchase  purchase ,
+		final Persister persister
+	)
+	{
+		final Integer year = purchase.timestamp().getYear();
+		/*
+		 * Purchases of existing years are added under the read lock, YearlyPurchases handles concurrent adds itself.
+		 * Only the first purchase of a new year is added under the write lock.
+		 */
+		try
+		{
+			final boolean added = this.read(year, () ->
+			{
+				final Lazy<YearlyPurchases> lazy = this.yearlyPurchases.get(year);
+				if(lazy == null)
+				{
+					return false;
+				}
+				final YearlyPurchases yearlyPurchases = load(lazy);
+				this.groupCommit().modifyAndStore(
+					(changedObjects, rollback) -> yearlyPurchases.add(purchase, persister, changedObjects, rollback),
+					persister
+				);
+				return true;
+			});
+			if(!added)
+			{
+				this.write(year, () ->
+					this.addAllToYear(year, List.of(purchase), persister)
+				);
+			}
+		}
+		finally
+		{
+			this.resultCache().invalidate(year);
+		}
+	}
+
+	/**
+	 * Reserves the purchased books and adds a new purchase,
+	 * and stores it with the {@link BookStoreDemo}'s {@link EmbeddedStorageManager}.
+	 * <p>
+	 * This is a synonym for:<pre>this.addAndReserve(purchase, BookStoreDemo.getInstance().storageManager())</pre>
+	 *
+	 * @param purchase the new purchase
+	 * @throws IllegalStateException if the shop's stock is insufficient, then the purchase is not added
+	 */
+	public void addAndReserve(final Purchase purchase)
+	{
+		this.addAndReserve(purchase, BookStoreDemo.getInstance().storageManager());
+	}
+
+	/**
+	 * Reserves the purchased books in the shop's {@link Inventory} and adds a new purchase,
+	 * and stores both with the given persister.
+	 * If the purchase can't be added, the reservation is released again.
+	 *
+	 * @param purchase the new purchase
+	 * @param persister the persister to store the changes with
+	 * @throws IllegalStateException if the shop's stock is insufficient, then the purchase is not added
+	 * @see #add(Purchase, Persister)
+	 */
+	public void addAndReserve(
+		final Purchase  purchase ,
+		final Persister persister
+	)
+	{
+		if(!reserve(purchase, persister))
+		{
+			throw insufficientStock(purchase);
+		}
+		try
+		{
+			this.add(purchase, persister);
+		}
+		catch(final RuntimeException e)
+		{
+			release(purchase, persister);
+			throw e;
+		}
+	}
+
+	/**
+	 * Adds new purchases in a batch and stores them with the {@link BookStoreDemo}'s {@link EmbeddedStorageManager}.
+	 * <p>
+	 * This is a synonym for:<pre>this.addAll(purchases, BookStoreDemo.getInstance().storageManager())</pre>
+	 *
+	 * @param purchases the new purchases
+	 * @throws PurchasesNotAddedException if the purchases of any year could not be added
+	 */
+	public void addAll(final Collection<Purchase> purchases)
+	{
+		this.addAll(purchases, BookStoreDemo.getInstance().storageManager());
+	}
+
+	/**
+	 * Adds new purchases in a batch and stores them with the given persister.
+	 * <p>
+	 * The purchases of each year are added under the year's write lock and all changes are stored
+	 * with a single store operation, instead of one per purchase.
+	 * So lists and sales figures which are affected by several purchases are stored only once.
+	 * <p>
+	 * The years are independent of each other, if the purchases of one year can't be added,
+	 * the other years are added nevertheless. The purchases of a year which could not be stored are removed
+	 * from memory again, so the year matches its stored state.
+	 * The shops' {@link Inventory}s are not changed, see {@link #addAllAndReserve(Collection, Persister)}.
+	 *
+	 * @param purchases the new purchases
+	 * @param persister the persister to store them with
+	 * @throws PurchasesNotAddedException if the purchases of any year could not be added,
+	 * it holds the purchases which were not added
+	 * @see #add(Purchase, Persister)
+	 * @see PurchaseIngestor
+	 */
+	public void addAll(
+		final Collection<Purchase> purchases,
+		final Persister            persister
+	)
+	{
+		this.addAll(purchases, persister, false);
+	}
+
+	/**
+	 * Reserves the purchased books and adds new purchases in a batch,
+	 * and stores them with the {@link BookStoreDemo}'s {@link EmbeddedStorageManager}.
+	 * <p>
+	 * This is a synonym for:<pre>this.addAllAndReserve(purchases, BookStoreDemo.getInstance().storageManager())</pre>
+	 *
+	 * @param purchases the new purchases
+	 * @throws PurchasesNotAddedException if any purchase could not be reserved or added
+	 */
+	public void addAllAndReserve(final Collection<Purchase> purchases)
+	{
+		this.addAllAndReserve(purchases, BookStoreDemo.getInstance().storageManager());
+	}
+
+	/**
+	 * Reserves the purchased books in the shops' {@link Inventory}s and adds new purchases in a batch,
+	 * and stores the changes with the given persister.
+	 * <p>
+	 * The purchases are added like by {@link #addAll(Collection, Persister)}.
+	 * Every purchase is reserved on its own, purchases with insufficient stock are not added,
+	 * the other ones are added nevertheless.
+	 * If the purchases of a year can't be added, their reservations are released again.
+	 *
+	 * @param purchases the new purchases
+	 * @param persister the persister to store the changes with
+	 * @throws PurchasesNotAddedException if any purchase could not be reserved or added,
+	 * it holds the purchases which were neither reserved nor added
+	 * @see #addAndReserve(Purchase, Persister)
+	 * @see PurchaseIngestor
+	 */
+	public void addAllAndReserve(
+		final Collection<Purchase> purchases,
+		final Persister            persister
+	)
+	{
+		this.addAll(purchases, persister, true);
+	}
+
+	private void addAll(
+		final Collection<Purchase> purchases,
+		final Persister            persister,
+		final boolean              reserve
+	)
+	{
+		final Map<Integer, List<Purchase>> yearToPurchases = purchases.stream()
+			.collect(groupingBy(purchase -> purchase.timestamp().getYear()));
+
+		/*
+		 * Failures are collected, so only the purchases which were not persisted are reported.
+		 */
+		final List<Purchase> notAdded = new ArrayList<>();
+		RuntimeException     failure  = null;
+		for(final Entry<Integer, List<Purchase>> entry : yearToPurchases.entrySet())
+		{
+			final Integer        year          = entry.getKey();
+			final List<Purchase> yearPurchases = new ArrayList<>(entry.getValue().size());
+			for(final Purchase purchase : entry.getValue())
+			{
+				if(!reserve || reserve(purchase, persister))
+				{
+					yearPurchases.add(purchase);
+				}
+				else
+				{
+					notAdded.add(purchase);
+					failure = addFailure(failure, insufficientStock(purchase));
+				}
+			}
+			if(yearPurchases.isEmpty())
+			{
+				continue;
+			}
+
+			try
+			{
+				this.write(year, () ->
+				{
+					try
+					{
+						this.addAllToYear(year, yearPurchases, persister);
+					}
+					finally
+					{
+						this.resultCache().invalidate(year);
+					}
+				});
+			}
+			catch(final RuntimeException e)
+			{
+				if(reserve)
+				{
+					yearPurchases.forEach(purchase -> release(purchase, persister));
+				}
+				notAdded.addAll(yearPurchases);
+				failure = addFailure(failure, e);
+			}
+		}
+
+		if(!notAdded.isEmpty())
+		{
+			throw new PurchasesNotAddedException(notAdded, failure);
+		}
+	}
+
+	private static RuntimeException addFailure(
+		final RuntimeException failure,
+		final RuntimeException next
+	)
+	{
+		if(failure == null)
+		{
+			return next;
+		}
+		failure.addSuppressed(next);
+		return failure;
+	}
+
+	/**
+	 * Adds purchases of a year and stores all changes with a single store operation.
+	 * <p>
+	 * The caller has to hold the year's write lock.
+	 * If the changes can't be stored, the purchases are removed from memory again,
+	 * so the year matches its stored state.
+	 *
+	 * @param year the year of the purchases
+	 * @param purchases the purchases to add
+	 * @param persister the persister to store the changes with
+	 */
+	private void addAllToYear(
+		final Integer              year     ,
+		final Collection<Purchase> purchases,
+		final Persister            persister
+	)
+	{
+		/*
+		 * Objects changed by several purchases have to be stored only once.
+		 */
+		final Set<Object>           changedObjects = Collections.newSetFromMap(new IdentityHashMap<>());
+		final Lazy<YearlyPurchases> lazy           = this.yearlyPurchases.get(year);
+		if(lazy != null)
+		{
+			final Rollback rollback = new Rollback();
+			load(lazy).addAll(purchases, changedObjects, rollback);
+			try
+			{
+				persister.storeAll(changedObjects);
+			}
+			catch(final RuntimeException e)
+			{
+				rollback.revert();
+				throw e;
+			}
+		}
+		else
+		{
+			/*
+			 * A new year is removed again as a whole, if it can't be stored.
+			 */
+			this.putYearlyPurchases(
+				year,
+				new YearlyPurchases().addAll(purchases, changedObjects, Rollback.NONE),
+				persister
+			);
+		}
+	}
+
 	/**
-	 * This method is used exclusively by the {@link RandomDataGenerator}
-	 * and it's not published by the {@link Purchases} interface.
+	 * Reserves the purchased books in the shop's inventory, all or nothing.
+	 *
+	 * @return <code>true</code> if the books were reserved, <code>false</code> if the shop's stock is insufficient
 	 */
-	Set<Customer> init(
-		final int year,
-		final List<Purchase> purchases,
+	private static boolean reserve(
+		final Purchase  purchase ,
 		final Persister persister
 	)
 	{
-		return this.write(year, () ->
-		{
-			final YearlyPurchases yearlyPurchases = new YearlyPurchases();
-			purchases.forEach(p -> yearlyPurchases.add(p, null));
-
-			final Lazy<YearlyPurchases> lazy = Lazy.Reference(yearlyPurchases);
-			this.yearlyPurchases.put(year, lazy);
-
-			persister.store(this.yearlyPurchases);
-
-			final Set<Customer> customers = new HashSet<>(yearlyPurchases.customerToPurchases.keySet());
-
-			yearlyPurchases.clear();
-			lazy.clear();
-
-			return customers;
-		});
+		return purchase.shop().inventory().reserveAll(purchase.itemsList(), persister);
 	}
-	
+
 	/**
-	 * Adds a new purchase and stores it with the {@link BookStoreDemo}'s {@link EmbeddedStorageManager}.
-	 * <p>
-	 * This is a synonym for:<pre>this.add(purchase, BookStoreDemo.getInstance().storageManager())</pre>
-	 *
-	 * @param purchase the new purchase
+	 * Releases the purchased books in the shop's inventory.
 	 */
-	public void add(final Purchase purchase)
+	private static void release(
+		final Purchase  purchase ,
+		final Persister persister
+	)
 	{
-		this.add(purchase, BookStoreDemo.getInstance().storageManager());
+		purchase.shop().inventory().releaseAll(purchase.itemsList(), persister);
+	}
+
+	private static IllegalStateException insufficientStock(final Purchase purchase)
+	{
+		return new IllegalStateException("Insufficient stock in shop " + purchase.shop().name());
 	}
 
 	/**
-	 * Adds a new purchase and stores it with the given persister.
+	 * Adds the purchases of a new year to the map and stores it.
+	 * <p>
+	 * The caller has to hold the year's write lock, so there is only one creator per year.
+	 * If the map can't be stored, the year is removed again.
 	 *
-	 * @param purchase the new purchase
-	 * @param persister the persister to store it with
-	 * @see #add(Purchase)
+	 * @param year the new year
+	 * @param yearlyPurchases the purchases of the year
+	 * @param persister the persister to store the map with
+	 * @return the lazy reference to the yearly purchases
 	 */
-	public void add(
-		final Purchase  purchase ,
-		final Persister persister
+	private Lazy<YearlyPurchases> putYearlyPurchases(
+		final Integer         year           ,
+		final YearlyPurchases yearlyPurchases,
+		final Persister       persister
 	)
 	{
-		final Integer year = purchase.timestamp().getYear();
-		this.write(year, () ->
+		final Lazy<YearlyPurchases> lazy = Lazy.Reference(yearlyPurchases);
+		/*
+		 * Different years may be created concurrently. The map has to be stored in the order
+		 * of modification, otherwise an older state of it could overwrite a newer one.
+		 * This only happens once per year, so the monitor is not contended.
+		 */
+		synchronized(this.yearlyPurchases)
 		{
-			final Lazy<YearlyPurchases> lazy = this.yearlyPurchases.get(year);
-			if(lazy != null)
+			this.yearlyPurchases.put(year, lazy);
+			try
 			{
-				lazy.get().add(purchase, persister);
+				persister.store(this.yearlyPurchases);
 			}
-			else
+			catch(final RuntimeException e)
 			{
-				this.write(0, () -> {
-					this.yearlyPurchases.put(
-						year,
-						Lazy.Reference(
-							new YearlyPurchases().add(purchase, null)
-						)
-					);
-					persister.store(this.yearlyPurchases);
-				});
+				/*
+				 * The year is not persisted, so it is not added at all.
+				 */
+				this.yearlyPurchases.remove(year);
+				throw e;
 			}
-		});
+		}
+		return lazy;
 	}
 
 	/**
@@ -292,12 +1141,13 @@ public class Purchases extends ReadWriteLockedStriped
 	 */
 	public Range<Integer> years()
 	{
-		return this.read(0, () -> {
-			final IntSummaryStatistics summary = this.yearlyPurchases.keySet().stream()
-				.mapToInt(Integer::intValue)
-				.summaryStatistics();
-			return Range.closed(summary.getMin(), summary.getMax());
-		});
+		/*
+		 * No lock needed, the map is concurrent and years are never removed.
+		 */
+		final IntSummaryStatistics summary = this.yearlyPurchases.keySet().stream()
+			.mapToInt(Integer::intValue)
+			.summaryStatistics();
+		return Range.closed(summary.getMin(), summary.getMax());
 	}
 
 	/**
@@ -308,15 +1158,15 @@ public class Purchases extends ReadWriteLockedStriped
 	 */
 	public void clear()
 	{
-		final List<Integer> years = this.read(0, () ->
-			new ArrayList<>(this.yearlyPurchases.keySet())
-		);
-		years.forEach(this::clear);
+		this.yearlyPurchases.keySet().forEach(this::clear);
 	}
 
 	/**
 	 * Clears all {@link Lazy} references regarding purchases of a specific year.
 	 * This frees the used memory but you do not lose the persisted data. It is loaded again on demand.
+	 * <p>
+	 * The cached query results of the year are discarded as well, they hold references to the purchases,
+	 * and the next queries have to compute them again from the loaded data.
 	 *
 	 * @param year the year to clear
 	 * @see #clear()
@@ -326,9 +1176,67 @@ public class Purchases extends ReadWriteLockedStriped
 	)
 	{
 		this.write(year, () ->
+		{
 			clearIfStored(this.yearlyPurchases.get(year))
-				.ifPresent(YearlyPurchases::clear)
-		);
+				.ifPresent(YearlyPurchases::clear);
+			this.resultCache().invalidate(year);
+		});
+	}
+
+	/**
+	 * Collects the loaded {@link Lazy} references of all years but the most recent one,
+	 * which always stays resident. Used by the {@link PurchasesEvictionManager}.
+	 * <p>
+	 * The references of a year are its {@link YearlyPurchases} and its loaded purchase lists.
+	 *
+	 * @param collector the consumer of the year and the reference
+	 */
+	void collectEvictableReferences(
+		final BiConsumer<Integer, Lazy<?>> collector
+	)
+	{
+		final int residentYear = this.yearlyPurchases.keySet().stream()
+			.mapToInt(Integer::intValue)
+			.max()
+			.orElse(Integer.MIN_VALUE);
+		this.yearlyPurchases.forEach((year, lazy) ->
+		{
+			final YearlyPurchases yearlyPurchases = lazy.peek();
+			if(year != residentYear && yearlyPurchases != null)
+			{
+				collector.accept(year, lazy);
+				yearlyPurchases.forEachLoadedList(list -> collector.accept(year, list));
+			}
+		});
+	}
+
+	/**
+	 * Clears {@link Lazy} references of a year under the year's write lock.
+	 * Used by the {@link PurchasesEvictionManager}.
+	 * <p>
+	 * The cached results of the year are discarded as well, since cached lists would keep
+	 * the evicted purchases reachable.
+	 *
+	 * @param year the year of the references
+	 * @param references the references to clear
+	 * @return the number of cleared references
+	 */
+	int evict(
+		final int           year      ,
+		final List<Lazy<?>> references
+	)
+	{
+		return this.write(year, () ->
+		{
+			final int cleared = (int)references.stream()
+				.filter(lazy -> clearIfStored(lazy).isPresent())
+				.count();
+			if(cleared > 0)
+			{
+				this.resultCache().invalidate(year);
+			}
+			return cleared;
+		});
 	}
 
 	/**
@@ -346,13 +1254,11 @@ public class Purchases extends ReadWriteLockedStriped
 	{
 		return this.read(year, () ->
 		{
-			final YearlyPurchases yearlyPurchases = Lazy.get(this.yearlyPurchases.get(year));
+			final YearlyPurchases yearlyPurchases = load(this.yearlyPurchases.get(year));
 			return streamFunction.apply(
 				yearlyPurchases == null
 					? Stream.empty()
-					: yearlyPurchases.shopToPurchases.values().parallelStream()
-						.map(l -> l.get())
-						.flatMap(List::stream)
+					: yearlyPurchases.all()
 			);
 		});
 	}
@@ -374,7 +1280,7 @@ public class Purchases extends ReadWriteLockedStriped
 	{
 		return this.read(year, () ->
 		{
-			final YearlyPurchases yearlyPurchases = Lazy.get(this.yearlyPurchases.get(year));
+			final YearlyPurchases yearlyPurchases = load(this.yearlyPurchases.get(year));
 			return streamFunction.apply(
 				yearlyPurchases == null
 					? Stream.empty()
@@ -400,7 +1306,7 @@ public class Purchases extends ReadWriteLockedStriped
 	{
 		return this.read(year, () ->
 		{
-			final YearlyPurchases yearlyPurchases = Lazy.get(this.yearlyPurchases.get(year));
+			final YearlyPurchases yearlyPurchases = load(this.yearlyPurchases.get(year));
 			return streamFunction.apply(
 				yearlyPurchases == null
 					? Stream.empty()
@@ -409,6 +1315,34 @@ public class Purchases extends ReadWriteLockedStriped
 		});
 	}
 
+	/**
+	 * Executes a function with a pre-filtered {@link Stream} of {@link Purchase}s and returns the computed value.
+	 * <p>
+	 * Only the purchase lists of the given shops are visited, e.g. selected by {@link Shops#ofCountry(Country)}.
+	 *
+	 * @param <T> the return type
+	 * @param shops shops to filter by
+	 * @param year year to filter by
+	 * @param streamFunction computing function
+	 * @return the computed result
+	 */
+	public <T> T computeByShopsAndYear(
+		final Collection<Shop>              shops         ,
+		final int                           year          ,
+		final Function<Stream<Purchase>, T> streamFunction
+	)
+	{
+		return this.read(year, () ->
+		{
+			final YearlyPurchases yearlyPurchases = load(this.yearlyPurchases.get(year));
+			return streamFunction.apply(
+				yearlyPurchases == null
+					? Stream.empty()
+					: yearlyPurchases.byShops(shops)
+			);
+		});
+	}
+
 	/**
 	 * Executes a function with a pre-filtered {@link Stream} of {@link Purchase}s and returns the computed value.
 	 *
@@ -426,7 +1360,7 @@ public class Purchases extends ReadWriteLockedStriped
 	{
 		return this.read(year, () ->
 		{
-			final YearlyPurchases yearlyPurchases = Lazy.get(this.yearlyPurchases.get(year));
+			final YearlyPurchases yearlyPurchases = load(this.yearlyPurchases.get(year));
 			return streamFunction.apply(
 				yearlyPurchases == null
 					? Stream.empty()
@@ -452,7 +1386,7 @@ public class Purchases extends ReadWriteLockedStriped
 	{
 		return this.read(year, () ->
 		{
-			final YearlyPurchases yearlyPurchases = Lazy.get(this.yearlyPurchases.get(year));
+			final YearlyPurchases yearlyPurchases = load(this.yearlyPurchases.get(year));
 			return streamFunction.apply(
 				yearlyPurchases == null
 					? Stream.empty()
@@ -461,22 +1395,135 @@ public class Purchases extends ReadWriteLockedStriped
 		});
 	}
 
+	/**
+	 * Executes a function with a pre-filtered {@link Stream} of {@link Purchase}s and returns the computed value.
+	 * <p>
+	 * Only the purchases of the months within the range are loaded.
+	 *
+	 * @param <T> the return type
+	 * @param from start of the range of time, inclusive
+	 * @param to end of the range of time, exclusive
+	 * @param streamFunction computing function
+	 * @return the computed result
+	 */
+	public <T> T computeByRange(
+		final LocalDateTime                 from          ,
+		final LocalDateTime                 to            ,
+		final Function<Stream<Purchase>, T> streamFunction
+	)
+	{
+		return streamFunction.apply(
+			ensureParallelStream(this.purchasesInRange(from, to, purchase -> true))
+		);
+	}
+
+	/**
+	 * Executes a function with a pre-filtered {@link Stream} of {@link Purchase}s and returns the computed value.
+	 * <p>
+	 * Only the purchases of the months within the range are loaded.
+	 *
+	 * @param <T> the return type
+	 * @param shop shop to filter by
+	 * @param from start of the range of time, inclusive
+	 * @param to end of the range of time, exclusive
+	 * @param streamFunction computing function
+	 * @return the computed result
+	 */
+	public <T> T computeByShopAndRange(
+		final Shop                          shop          ,
+		final LocalDateTime                 from          ,
+		final LocalDateTime                 to            ,
+		final Function<Stream<Purchase>, T> streamFunction
+	)
+	{
+		return streamFunction.apply(
+			ensureParallelStream(this.purchasesInRange(from, to, purchase -> purchase.shop() == shop))
+		);
+	}
+
+	/**
+	 * Collects the purchases of a range of time, every year is read under its own read lock.
+	 *
+	 * @param from start of the range of time, inclusive
+	 * @param to end of the range of time, exclusive
+	 * @param predicate additional predicate to filter by
+	 * @return the matching purchases
+	 */
+	private List<Purchase> purchasesInRange(
+		final LocalDateTime       from     ,
+		final LocalDateTime       to       ,
+		final Predicate<Purchase> predicate
+	)
+	{
+		final List<Purchase> result = new ArrayList<>();
+		if(!from.isBefore(to))
+		{
+			return result;
+		}
+
+		final LocalDateTime last = to.minusNanos(1L);
+		final Predicate<Purchase> rangePredicate = purchase ->
+			!purchase.timestamp().isBefore(from)
+			&& purchase.timestamp().isBefore(to)
+			&& predicate.test(purchase)
+		;
+		this.yearlyPurchases.keySet().stream()
+			.filter(year -> year >= from.getYear() && year <= last.getYear())
+			.sorted()
+			.forEach(year ->
+			{
+				final int firstMonth = year == from.getYear() ? from.getMonthValue() : 1;
+				final int lastMonth  = year == last.getYear() ? last.getMonthValue() : 12;
+				this.read(year, () ->
+					load(this.yearlyPurchases.get(year))
+						.byMonths(firstMonth, lastMonth, rangePredicate, result)
+				);
+			});
+		return result;
+	}
+
 	/**
 	 * Computes the best selling books for a specific year.
+	 * <p>
+	 * The result is based on pre-aggregated sales numbers, no purchases have to be loaded.
 	 *
 	 * @param year the year to filter by
 	 * @return list of best selling books
 	 */
 	public List<BookSales> bestSellerList(final int year)
 	{
-		return this.computeByYear(
-			year,
-			this::bestSellerList
-		);
+		return this.bestSellerList(year, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Computes the top best selling books for a specific year.
+	 * <p>
+	 * The result is based on pre-aggregated sales numbers, no purchases have to be loaded.
+	 *
+	 * @param year the year to filter by
+	 * @param limit the maximum size of the list
+	 * @return list of best selling books
+	 */
+	public List<BookSales> bestSellerList(
+		final int year ,
+		final int limit
+	)
+	{
+		return this.cachedList("bestSellerList", year, null, limit, () -> this.read(year, () ->
+		{
+			final YearlyPurchases yearlyPurchases = load(this.yearlyPurchases.get(year));
+			return yearlyPurchases == null
+				? new ArrayList<>()
+				: yearlyPurchases.computeSalesFigures(
+					salesFigures -> bestSellerList(salesFigures, limit)
+				);
+		}));
 	}
 
 	/**
 	 * Computes the best selling books for a specific year and country.
+	 * <p>
+	 * The result is based on pre-aggregated sales numbers, no purchases have to be loaded.
 	 *
 	 * @param year the year to filter by
 	 * @param country the country to filter by
@@ -487,41 +1534,99 @@ public class Purchases extends ReadWriteLockedStriped
 		final Country country
 	)
 	{
-		return this.computeByShopsAndYear(
-			shopInCountryPredicate(country),
-			year,
-			this::bestSellerList
-		);
+		return this.bestSellerList(year, country, Integer.MAX_VALUE);
 	}
-	
-	private List<BookSales> bestSellerList(final Stream<Purchase> purchases)
-	{
-		return purchases
-			.flatMap(Purchase::items)
-			.collect(
-				groupingBy(
-					PurchaseItem::book,
-					summingInt(PurchaseItem::amount)
-				)
-			)
-			.entrySet()
-			.stream()
-			.map(e -> new BookSales(e.getKey(), e.getValue()))
-			.sorted()
-			.collect(toList());
+
+	/**
+	 * Computes the top best selling books for a specific year and country.
+	 * <p>
+	 * The result is based on pre-aggregated sales numbers, no purchases have to be loaded.
+	 *
+	 * @param year the year to filter by
+	 * @param country the country to filter by
+	 * @param limit the maximum size of the list
+	 * @return list of best selling books
+	 */
+	public List<BookSales> bestSellerList(
+		final int     year   ,
+		final Country country,
+		final int     limit
+	)
+	{
+		return this.cachedList("bestSellerList", year, country, limit, () -> this.read(year, () ->
+		{
+			final YearlyPurchases yearlyPurchases = load(this.yearlyPurchases.get(year));
+			return yearlyPurchases == null
+				? new ArrayList<>()
+				: yearlyPurchases.computeSalesFigures(
+					country,
+					salesFigures -> bestSellerList(salesFigures, limit)
+				);
+		}));
+	}
+
+	private static List<BookSales> bestSellerList(
+		final SalesFigures salesFigures,
+		final int          limit
+	)
+	{
+		if(limit < 0)
+		{
+			throw new IllegalArgumentException("limit must not be negative: " + limit);
+		}
+		if(salesFigures == null || limit == 0)
+		{
+			return new ArrayList<>();
+		}
+
+		final int bookCount = salesFigures.bookSales.size();
+		if(limit >= bookCount)
+		{
+			final List<BookSales> bookSales = new ArrayList<>(bookCount);
+			salesFigures.bookSales.forEach(
+				(book, amount) -> bookSales.add(new BookSales(book, (int)amount))
+			);
+			bookSales.sort(null);
+			return bookSales;
+		}
+
+		/*
+		 * Bounded min-heap: the head is the weakest of the current top books,
+		 * so only books which beat it are allocated and offered.
+		 */
+		final PriorityQueue<BookSales> topSales = new PriorityQueue<>(limit + 1, Comparator.reverseOrder());
+		salesFigures.bookSales.forEach((book, amount) ->
+		{
+			if(topSales.size() < limit)
+			{
+				topSales.add(new BookSales(book, (int)amount));
+			}
+			else if(amount > topSales.peek().amount())
+			{
+				topSales.poll();
+				topSales.add(new BookSales(book, (int)amount));
+			}
+		});
+
+		final List<BookSales> bookSales = new ArrayList<>(topSales);
+		bookSales.sort(null);
+		return bookSales;
 	}
 
 	/**
 	 * Counts all purchases which were made by customers in foreign countries.
+	 * <p>
+	 * The result is computed by a scan over the columnar purchase facts.
 	 *
 	 * @param year the year to filter by
 	 * @return the amount of computed purchases
 	 */
 	public long countPurchasesOfForeigners(final int year)
 	{
-		return this.computePurchasesOfForeigners(
+		return this.computeFacts(
 			year,
-			purchases -> purchases.count()
+			facts -> facts.countPurchasesOfForeigners(),
+			0L
 		);
 	}
 
@@ -533,9 +1638,11 @@ public class Purchases extends ReadWriteLockedStriped
 	 */
 	public List<Purchase> purchasesOfForeigners(final int year)
 	{
-		return this.computePurchasesOfForeigners(
-			year,
-			purchases -> purchases.collect(toList())
+		return this.cachedList("purchasesOfForeigners", year, null, 0, () ->
+			this.computePurchasesOfForeigners(
+				year,
+				purchases -> purchases.collect(toList())
+			)
 		);
 	}
 	
@@ -556,6 +1663,8 @@ public class Purchases extends ReadWriteLockedStriped
 
 	/**
 	 * Counts all purchases which were made by customers in foreign cities.
+	 * <p>
+	 * The result is computed by a scan over the columnar purchase facts.
 	 *
 	 * @param year the year to filter by
 	 * @param country the country to filter by
@@ -566,10 +1675,10 @@ public class Purchases extends ReadWriteLockedStriped
 		final Country country
 	)
 	{
-		return this.computePurchasesOfForeigners(
+		return this.computeFacts(
 			year,
-			country,
-			purchases -> purchases.count()
+			facts -> facts.countPurchasesOfForeigners(country),
+			0L
 		);
 	}
 
@@ -585,10 +1694,12 @@ public class Purchases extends ReadWriteLockedStriped
 		final Country country
 	)
 	{
-		return this.computePurchasesOfForeigners(
-			year,
-			country,
-			purchases -> purchases.collect(toList())
+		return this.cachedList("purchasesOfForeigners", year, country, 0, () ->
+			this.computePurchasesOfForeigners(
+				year,
+				country,
+				purchases -> purchases.collect(toList())
+			)
 		);
 	}
 
@@ -598,8 +1709,12 @@ public class Purchases extends ReadWriteLockedStriped
 		final Function <Stream<Purchase>, T> streamFunction
 	)
 	{
+		/*
+		 * The shops of the country are selected via the index of all shops,
+		 * instead of testing every shop which made purchases in the year.
+		 */
 		return this.computeByShopsAndYear(
-			shopInCountryPredicate(country),
+			BookStoreDemo.getInstance().data().shops().ofCountry(country),
 			year,
 			purchases -> streamFunction.apply(
 				purchases.filter(
@@ -609,18 +1724,46 @@ public class Purchases extends ReadWriteLockedStriped
 		);
 	}
 	
-	private static Predicate<Shop> shopInCountryPredicate(final Country country)
+	/**
+	 * Executes a function with the columnar purchase facts of a specific year.
+	 *
+	 * @param <T> the return type
+	 * @param year the year to filter by
+	 * @param function computing function
+	 * @param emptyResult the result if there are no purchases in the year
+	 * @return the computed result
+	 */
+	private <T> T computeFacts(
+		final int                        year       ,
+		final Function<PurchaseFacts, T> function   ,
+		final T                          emptyResult
+	)
 	{
-		return shop -> shop.address().city().state().country() == country;
+		final Optional<T> result = this.read(year, () ->
+		{
+			final YearlyPurchases yearlyPurchases = load(this.yearlyPurchases.get(year));
+			return yearlyPurchases == null
+				? Optional.of(emptyResult)
+				: yearlyPurchases.computeFacts(function);
+		});
+		/*
+		 * Purchases are added under the read lock, so the facts are built under the write lock.
+		 * This is only needed once, or after the year has been cleared.
+		 */
+		return result.orElseGet(() -> this.write(year, () ->
+			load(this.yearlyPurchases.get(year)).buildAndComputeFacts(function)
+		));
 	}
 
 	private static Predicate<? super Purchase> purchaseOfForeignerPredicate()
 	{
-		return p -> p.customer().address().city() != p.shop().address().city();
+		return p -> p.customer().address().city().id() != p.shop().address().city().id();
 	}
 
 	/**
 	 * Computes the complete revenue of a specific shop in a whole year.
+	 * <p>
+	 * The result is based on pre-aggregated revenue, no purchases have to be loaded.
 	 *
 	 * @param shop the shop to filter by
 	 * @param year the year to filter by
@@ -631,32 +1774,44 @@ public class Purchases extends ReadWriteLockedStriped
 		final int  year
 	)
 	{
-		return this.computeByShopAndYear(
-			shop,
-			year,
-			purchases -> purchases
-				.map(Purchase::total)
-				.collect(summarizingMonetary(BookStoreDemo.CURRENCY_UNIT))
-				.getSum()
-		);
+		return this.read(year, () ->
+		{
+			final YearlyPurchases yearlyPurchases = load(this.yearlyPurchases.get(year));
+			return BookStoreDemo.moneyOfCents(
+				yearlyPurchases == null
+					? 0L
+					: yearlyPurchases.computeSalesFigures(
+						salesFigures -> salesFigures.shopRevenue.get(shop)
+					)
+			);
+		});
 	}
 
 	/**
 	 * Computes the worldwide best performing employee in a specific year.
+	 * <p>
+	 * The result is based on pre-aggregated revenue, no purchases have to be loaded.
 	 *
 	 * @param year the year to filter by
 	 * @return the employee which made the most revenue
 	 */
 	public Employee employeeOfTheYear(final int year)
 	{
-		return this.computeByYear(
-			year,
-			bestPerformingEmployeeFunction()
-		);
+		return this.resultCache().get("employeeOfTheYear", year, null, 0, () -> this.read(year, () ->
+		{
+			final YearlyPurchases yearlyPurchases = load(this.yearlyPurchases.get(year));
+			return yearlyPurchases == null
+				? null
+				: yearlyPurchases.computeSalesFigures(
+					Purchases::employeeOfTheYear
+				);
+		}));
 	}
 
 	/**
 	 * Computes the best performing employee in a specific year.
+	 * <p>
+	 * The result is based on pre-aggregated revenue, no purchases have to be loaded.
 	 *
 	 * @param year the year to filter by
 	 * @param country the country to filter by
@@ -667,26 +1822,23 @@ public class Purchases extends ReadWriteLockedStriped
 		final Country country
 	)
 	{
-		return this.computeByShopsAndYear(
-			shopInCountryPredicate(country) ,
-			year,
-			bestPerformingEmployeeFunction()
-		);
+		return this.resultCache().get("employeeOfTheYear", year, country, 0, () -> this.read(year, () ->
+		{
+			final YearlyPurchases yearlyPurchases = load(this.yearlyPurchases.get(year));
+			return yearlyPurchases == null
+				? null
+				: yearlyPurchases.computeSalesFigures(
+					country,
+					Purchases::employeeOfTheYear
+				);
+		}));
 	}
 
-	private static Function<Stream<Purchase>, Employee> bestPerformingEmployeeFunction()
+	private static Employee employeeOfTheYear(final SalesFigures salesFigures)
 	{
-		return purchases -> maxKey(
-			purchases.collect(
-				groupingBy(
-					Purchase::employee,
-					summingMonetaryAmount(
-						BookStoreDemo.CURRENCY_UNIT,
-						Purchase::total
-					)
-				)
-			)
-		);
+		return salesFigures == null
+			? null
+			: salesFigures.employeeRevenue.maxKey();
 	}
 
 }
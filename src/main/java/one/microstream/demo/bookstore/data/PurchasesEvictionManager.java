@@ -0,0 +1,274 @@
+package one.microstream.demo.bookstore.data;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+import org.rapidpm.dependencies.core.logger.HasLogger;
+
+import one.microstream.reference.Lazy;
+
+/**
+ * Evicts the least recently used {@link Lazy} references of {@link Purchases} when the heap runs full.
+ * <p>
+ * The collection usage thresholds of the heap memory pools are set to a fraction of their maximum size.
+ * When the usage after a garbage collection exceeds it, the least recently touched references
+ * (years and purchase lists, see {@link Lazy#lastTouched()}) are cleared, in relation to the eviction ratio.
+ * The most recent year is never evicted, so the hot data stays resident.
+ * <p>
+ * Evicted references are loaded again on demand.
+ *
+ * @see Purchases#clear()
+ */
+public class PurchasesEvictionManager implements HasLogger
+{
+	/**
+	 * An evictable reference and its last access time at the time of collection.
+	 */
+	private static class Candidate
+	{
+		final int     year       ;
+		final Lazy<?> lazy       ;
+		final long    lastTouched;
+
+		Candidate(
+			final int     year,
+			final Lazy<?> lazy
+		)
+		{
+			super();
+			this.year        = year;
+			this.lazy        = lazy;
+			this.lastTouched = lazy.lastTouched();
+		}
+	}
+
+
+	public final static double DEFAULT_USAGE_THRESHOLD = 0.75;
+	public final static double DEFAULT_EVICTION_RATIO  = 0.25;
+
+	private final Purchases            purchases;
+	private final double               usageThreshold;
+	private final double               evictionRatio;
+	private final NotificationListener listener          = this::handleNotification;
+	private final AtomicBoolean        evictionPending   = new AtomicBoolean();
+	private final LongAdder            thresholdExceeded = new LongAdder();
+	private final LongAdder            evictionRuns      = new LongAdder();
+	private final LongAdder            evictions         = new LongAdder();
+	private       ExecutorService      executor;
+
+	/**
+	 * Creates a new eviction manager with the default settings.
+	 *
+	 * @param purchases the purchases to manage
+	 */
+	public PurchasesEvictionManager(final Purchases purchases)
+	{
+		this(purchases, DEFAULT_USAGE_THRESHOLD, DEFAULT_EVICTION_RATIO);
+	}
+
+	/**
+	 * Creates a new eviction manager.
+	 *
+	 * @param purchases the purchases to manage
+	 * @param usageThreshold the fraction of the heap pools' maximum size which triggers an eviction, 0-1
+	 * @param evictionRatio the fraction of the evictable references which are cleared per eviction, 0-1
+	 */
+	public PurchasesEvictionManager(
+		final Purchases purchases     ,
+		final double    usageThreshold,
+		final double    evictionRatio
+	)
+	{
+		super();
+		if(usageThreshold <= 0.0 || usageThreshold > 1.0)
+		{
+			throw new IllegalArgumentException("usageThreshold out of range (0-1]: " + usageThreshold);
+		}
+		if(evictionRatio <= 0.0 || evictionRatio > 1.0)
+		{
+			throw new IllegalArgumentException("evictionRatio out of range (0-1]: " + evictionRatio);
+		}
+		this.purchases      = purchases     ;
+		this.usageThreshold = usageThreshold;
+		this.evictionRatio  = evictionRatio ;
+	}
+
+	/**
+	 * Sets the usage thresholds of the heap memory pools and starts listening to their notifications.
+	 *
+	 * @return this
+	 */
+	public synchronized PurchasesEvictionManager start()
+	{
+		if(this.executor != null)
+		{
+			return this;
+		}
+
+		this.executor = Executors.newSingleThreadExecutor(runnable ->
+		{
+			final Thread thread = new Thread(runnable, "PurchasesEvictionManager");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		for(final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+		{
+			final long max = pool.getUsage().getMax();
+			if(pool.getType() == MemoryType.HEAP
+				&& pool.isCollectionUsageThresholdSupported()
+				&& max > 0L
+			)
+			{
+				pool.setCollectionUsageThreshold((long)(max * this.usageThreshold));
+			}
+		}
+		((NotificationEmitter)ManagementFactory.getMemoryMXBean())
+			.addNotificationListener(this.listener, null, null);
+
+		return this;
+	}
+
+	/**
+	 * Stops listening to memory notifications.
+	 */
+	public synchronized void stop()
+	{
+		if(this.executor == null)
+		{
+			return;
+		}
+
+		try
+		{
+			((NotificationEmitter)ManagementFactory.getMemoryMXBean())
+				.removeNotificationListener(this.listener);
+		}
+		catch(final ListenerNotFoundException e)
+		{
+			// already removed
+		}
+		this.executor.shutdown();
+		this.executor = null;
+	}
+
+	private void handleNotification(
+		final Notification notification,
+		final Object       handback
+	)
+	{
+		if(!MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType()))
+		{
+			return;
+		}
+
+		this.thresholdExceeded.increment();
+
+		/*
+		 * The notifications of several pools are coalesced into one eviction.
+		 */
+		synchronized(this)
+		{
+			if(this.executor != null && this.evictionPending.compareAndSet(false, true))
+			{
+				this.executor.execute(() ->
+				{
+					this.evictionPending.set(false);
+					this.evict();
+				});
+			}
+		}
+	}
+
+	/**
+	 * Clears the least recently used references, in relation to the eviction ratio.
+	 * <p>
+	 * This is executed automatically when the heap usage exceeds the threshold, but can be called manually as well.
+	 *
+	 * @return the number of cleared references
+	 */
+	public int evict()
+	{
+		final List<Candidate> candidates = new ArrayList<>();
+		this.purchases.collectEvictableReferences(
+			(year, lazy) -> candidates.add(new Candidate(year, lazy))
+		);
+		if(candidates.isEmpty())
+		{
+			return 0;
+		}
+
+		candidates.sort(Comparator.comparingLong(candidate -> candidate.lastTouched));
+		final int count = (int)Math.ceil(candidates.size() * this.evictionRatio);
+
+		final Map<Integer, List<Lazy<?>>> yearToReferences = new HashMap<>();
+		for(final Candidate candidate : candidates.subList(0, count))
+		{
+			yearToReferences.computeIfAbsent(candidate.year, year -> new ArrayList<>())
+				.add(candidate.lazy);
+		}
+
+		final int evicted = yearToReferences.entrySet().stream()
+			.mapToInt(e -> this.purchases.evict(e.getKey(), e.getValue()))
+			.sum();
+
+		this.evictionRuns.increment();
+		this.evictions.add(evicted);
+
+		this.logger().info(
+			"Evicted " + evicted + " of " + candidates.size() + " loaded purchase references"
+			+ " in " + yearToReferences.size() + " years"
+		);
+
+		return evicted;
+	}
+
+	/**
+	 * @return the number of purchase references which were loaded since the start of the application
+	 */
+	public long loadCount()
+	{
+		return Purchases.loadCount();
+	}
+
+	/**
+	 * @return the number of evicted purchase references
+	 */
+	public long evictionCount()
+	{
+		return this.evictions.sum();
+	}
+
+	/**
+	 * @return the number of executed evictions
+	 */
+	public long evictionRunCount()
+	{
+		return this.evictionRuns.sum();
+	}
+
+	/**
+	 * @return the number of received notifications that the heap usage exceeded the threshold
+	 */
+	public long thresholdExceededCount()
+	{
+		return this.thresholdExceeded.sum();
+	}
+
+}
@@ -0,0 +1,39 @@
+package one.microstream.demo.bookstore.data;
+
+import java.util.Collection;
+import java.util.List;
+
+import one.microstream.persistence.types.Persister;
+
+/**
+ * Thrown if some purchases of a batch could not be added, all other purchases of the batch were added.
+ * <p>
+ * The cause is the first failure, further failures are suppressed.
+ *
+ * @see Purchases#addAll(Collection, Persister)
+ * @see Purchases#addAllAndReserve(Collection, Persister)
+ */
+public class PurchasesNotAddedException extends RuntimeException
+{
+	private final List<Purchase> purchases;
+
+	PurchasesNotAddedException(
+		final List<Purchase> purchases,
+		final Throwable      cause
+	)
+	{
+		super(purchases.size() + " purchase(s) not added", cause);
+		this.purchases = List.copyOf(purchases);
+	}
+
+	/**
+	 * Get the purchases which were not added, and not reserved either.
+	 *
+	 * @return the purchases which were not added
+	 */
+	public List<Purchase> purchases()
+	{
+		return this.purchases;
+	}
+
+}
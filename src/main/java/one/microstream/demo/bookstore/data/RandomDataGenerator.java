@@ -1,5 +1,6 @@
 package one.microstream.demo.bookstore.data;
 
+import static java.util.Comparator.comparingInt;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
 
@@ -9,6 +10,7 @@ import java.time.Month;
 import java.time.Year;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -33,48 +35,55 @@ import one.microstream.storage.embedded.types.EmbeddedStorageManager;
  * Random data generator for the {@link BookStoreDemo}'s {@link Data} root.
  * <p>
  * Data amount boundaries can be controlled with {@link RandomDataAmount}.
+ * <p>
+ * The generated data is determined by the random seed: the same seed and data amount
+ * produce the same data. Every country uses its own random generator,
+ * so the countries can still be created in parallel.
  *
  */
 public class RandomDataGenerator implements HasLogger
 {
 	private static class CountryData extends ArrayList<City>
 	{
+		Random                    random;
 		Faker                     faker ;
 		Locale                    locale;
 		List<Shop>                shops ;
 		Map<City, List<Customer>> people;
 
 		CountryData(
-			final Faker  faker ,
+			final Random random,
 			final Locale locale
 		)
 		{
 			super(512);
 
-			this.faker   = faker ;
+			this.random  = random;
+			this.faker   = Faker.instance(locale, random);
 			this.locale  = locale;
 
 			this.shops = new ArrayList<>();
 		}
 
-		City randomCity(final Random random)
+		City randomCity()
 		{
-			return this.get(random.nextInt(this.size()));
+			return this.get(this.random.nextInt(this.size()));
 		}
 
-		Customer randomCustomer(final Random random)
+		Customer randomCustomer()
 		{
-			return this.randomCustomer(random, this.randomCity(random));
+			return this.randomCustomer(this.randomCity());
 		}
 
-		Customer randomCustomer(final Random random, final City city)
+		Customer randomCustomer(final City city)
 		{
 			final List<Customer> peopleOfCity = this.people.get(city);
-			return peopleOfCity.get(random.nextInt(peopleOfCity.size()));
+			return peopleOfCity.get(this.random.nextInt(peopleOfCity.size()));
 		}
 
 		void dispose()
 		{
+			this.random = null;
 			this.faker = null;
 			this.locale = null;
 
@@ -88,15 +97,17 @@ public class RandomDataGenerator implements HasLogger
 		}
 	}
 
+	private final Geography              geography     ;
 	private final Books                  books         ;
 	private final Shops                  shops         ;
 	private final Customers              customers     ;
 	private final Purchases              purchases     ;
 	private final RandomDataAmount       dataAmount    ;
+	private final long                   seed          ;
 	private final EmbeddedStorageManager storageManager;
+	private final Random                 random        ;
+	private final Faker                  faker         ;
 
-	private final Random                 random     = new Random()         ;
-	private final Faker                  faker      = Faker.instance()     ;
 	private final AtomicInteger          customerId = new AtomicInteger(0) ;
 	private final Set<String>            usedIsbns  = new HashSet<>(4096)  ;
 	private final List<Book>             bookList   = new ArrayList<>(4096);
@@ -106,22 +117,28 @@ public class RandomDataGenerator implements HasLogger
 	private final BigDecimal             priceRange = this.maxPrice.subtract(this.minPrice);
 
 	public RandomDataGenerator(
+		final Geography              geography     ,
 		final Books                  books         ,
 		final Shops                  shops         ,
 		final Customers              customers     ,
 		final Purchases              purchases     ,
 		final RandomDataAmount       dataAmount    ,
+		final long                   seed          ,
 		final EmbeddedStorageManager storageManager
 	)
 	{
 		super();
 
+		this.geography      = geography     ;
 		this.books          = books         ;
 		this.shops          = shops         ;
 		this.customers      = customers     ;
 		this.purchases      = purchases     ;
 		this.dataAmount     = dataAmount    ;
+		this.seed           = seed          ;
 		this.storageManager = storageManager;
+		this.random         = new Random(seed);
+		this.faker          = Faker.instance(this.random);
 	}
 
 	public DataMetrics generate()
@@ -134,6 +151,16 @@ public class RandomDataGenerator implements HasLogger
 			.map(this::createCountry)
 			.collect(toList());
 
+		/*
+		 * Geography ids are assigned sequentially as well, in the order of the locales.
+		 */
+		countries.forEach(countryData -> this.geography.addAll(countryData, this.storageManager));
+
+		/*
+		 * Customer ids are assigned sequentially, in the order of the locales.
+		 */
+		countries.forEach(this::createCustomers);
+
 		this.createBooks(countries);
 
 		this.createShops(countries);
@@ -186,15 +213,18 @@ public class RandomDataGenerator implements HasLogger
 	{
 		this.logger().info("> country " + locale.getDisplayCountry());
 
-		final Faker              faker       = Faker.instance(locale);
+		final CountryData        countryData = new CountryData(
+			new Random(this.seed ^ locale.toString().hashCode()),
+			locale
+		);
+		final Faker              faker       = countryData.faker;
 		final Set<String>        cityNameSet = new HashSet<>();
 		final Map<String, State> stateMap    = new HashMap<>();
 		final Country            country     = new Country(
 			locale.getDisplayCountry(Locale.ENGLISH),
 			locale.getCountry()
 		);
-		final CountryData        countryData = new CountryData(faker, locale);
-		this.randomRange(this.dataAmount.maxCitiesPerCountry()).forEach(i ->
+		this.randomRange(countryData.random, this.dataAmount.maxCitiesPerCountry()).forEach(i ->
 		{
 			final com.github.javafaker.Address fakerAddress = faker.address();
 			final String                       cityName     = fakerAddress.city();
@@ -209,17 +239,24 @@ public class RandomDataGenerator implements HasLogger
 			}
 		});
 
+		this.logger().info(
+			"+ country " + locale.getDisplayCountry() + " [" + countryData.size() + " cities]"
+		);
+
+		return countryData;
+	}
+
+	private void createCustomers(final CountryData countryData)
+	{
 		countryData.people = new HashMap<>(countryData.size(), 1.0f);
-		countryData.parallelStream().forEach(city -> {
+		countryData.forEach(city -> {
 			countryData.people.put(city, this.createCustomers(countryData, city));
 		});
 
 		this.logger().info(
-			"+ country " + locale.getDisplayCountry() + " [" + countryData.size() + " cities, " +
-				countryData.people.values().stream().mapToInt(List::size).sum() + " customers] "
+			"+ " + countryData.people.values().stream().mapToInt(List::size).sum() + " customers in "
+				+ countryData.locale.getDisplayCountry()
 		);
-
-		return countryData;
 	}
 
 	private List<Customer> createCustomers(
@@ -227,7 +264,7 @@ public class RandomDataGenerator implements HasLogger
 		final City        city
 	)
 	{
-		return this.randomRange(this.dataAmount.maxCustomersPerCity())
+		return this.randomRange(countryData.random, this.dataAmount.maxCustomersPerCity())
 			.mapToObj(i -> new Customer(
 				this.customerId.incrementAndGet(),
 				countryData.faker.name().fullName(),
@@ -239,7 +276,7 @@ public class RandomDataGenerator implements HasLogger
 	private void createBooks(final List<CountryData> countries)
 	{
 		final List<Genre> genres = this.createGenres();
-		countries.parallelStream().forEach(country ->
+		countries.parallelStream().map(country ->
 		{
 			this.logger().info("> books in " + country.locale.getDisplayCountry());
 
@@ -251,13 +288,12 @@ public class RandomDataGenerator implements HasLogger
 				.map(title -> this.createBook(country, genres, publishers, authors, language, title))
 				.collect(toList());
 
-			synchronized(this.bookList)
-			{
-				this.bookList.addAll(books);
-			}
-
 			this.logger().info("+ " + books.size() + " books in "+ country.locale.getDisplayCountry());
-		});
+
+			return books;
+		})
+		.collect(toList())
+		.forEach(this.bookList::addAll);
 
 		this.books.addAll(this.bookList, this.storageManager);
 	}
@@ -274,22 +310,23 @@ public class RandomDataGenerator implements HasLogger
 		String isbn;
 		synchronized(this.usedIsbns)
 		{
-			while(!this.usedIsbns.add(isbn = this.faker.code().isbn13(true)))
+			while(!this.usedIsbns.add(isbn = country.faker.code().isbn13(true)))
 			{
 				// empty loop
 			}
 		}
-		final Genre          genre         = genres.get(this.random.nextInt(genres.size()));
-		final Publisher      publisher     = publishers.get(this.random.nextInt(publishers.size()));
-		final Author         author        = authors.get(this.random.nextInt(authors.size()));
-		final MonetaryAmount purchasePrice = BookStoreDemo.money(this.randomPurchasePrice());
+		final Random         random        = country.random;
+		final Genre          genre         = genres.get(random.nextInt(genres.size()));
+		final Publisher      publisher     = publishers.get(random.nextInt(publishers.size()));
+		final Author         author        = authors.get(random.nextInt(authors.size()));
+		final MonetaryAmount purchasePrice = BookStoreDemo.money(this.randomPurchasePrice(random));
 		final MonetaryAmount retailPrice   = BookStoreDemo.retailPrice(purchasePrice);
 		return new Book(isbn, title, author, genre, publisher, language, purchasePrice, retailPrice);
 	}
 
 	private List<Genre> createGenres()
 	{
-		return this.randomRange(this.dataAmount.maxGenres())
+		return this.randomRange(this.random, this.dataAmount.maxGenres())
 			.mapToObj(i -> this.faker.book().genre())
 			.distinct()
 			.map(Genre::new)
@@ -298,19 +335,19 @@ public class RandomDataGenerator implements HasLogger
 
 	private List<Publisher> createPublishers(final CountryData countryData)
 	{
-		return this.randomRange(this.dataAmount.maxPublishersPerCountry())
+		return this.randomRange(countryData.random, this.dataAmount.maxPublishersPerCountry())
 			.mapToObj(i -> countryData.faker.book().publisher())
 			.distinct()
-			.map(name -> new Publisher(name, this.createAddress(countryData.randomCity(this.random), countryData.faker)))
+			.map(name -> new Publisher(name, this.createAddress(countryData.randomCity(), countryData.faker)))
 			.collect(toList());
 	}
 
 	private List<Author> createAuthors(final CountryData countryData)
 	{
-		return this.randomRange(this.dataAmount.maxAuthorsPerCountry())
+		return this.randomRange(countryData.random, this.dataAmount.maxAuthorsPerCountry())
 			.mapToObj(i -> countryData.faker.book().author())
 			.distinct()
-			.map(name -> new Author(name, this.createAddress(countryData.randomCity(this.random), countryData.faker)))
+			.map(name -> new Author(name, this.createAddress(countryData.randomCity(), countryData.faker)))
 			.collect(toList());
 	}
 
@@ -321,7 +358,7 @@ public class RandomDataGenerator implements HasLogger
 			this.logger().info("> shops in " + country.locale.getDisplayCountry());
 
 			country.forEach(
-				city -> this.randomRange(this.dataAmount.maxShopsPerCity()).forEach(
+				city -> this.randomRange(country.random, this.dataAmount.maxShopsPerCity()).forEach(
 					i -> country.shops.add(this.createShop(countries, country, city, i))
 				)
 			);
@@ -342,12 +379,13 @@ public class RandomDataGenerator implements HasLogger
 		final String             name      = city.name() + " Shop " + nr;
 		final Address            address   = this.createAddress(city, countryData.faker);
 		final List<Employee>     employees = this.createEmployees(countryData, city);
-		final Map<Book, Integer> inventory = this.randomRange(this.dataAmount.maxBooksPerShop())
-			.mapToObj(i -> this.randomBook())
+		final Random             random    = countryData.random;
+		final Map<Book, Integer> inventory = this.randomRange(random, this.dataAmount.maxBooksPerShop())
+			.mapToObj(i -> this.randomBook(random))
 			.distinct()
 			.collect(toMap(
 				book -> book,
-				book -> this.random.nextInt(50) + 1
+				book -> random.nextInt(50) + 1
 			));
 		return new Shop(name, address, employees, new Inventory(inventory));
 	}
@@ -357,12 +395,20 @@ public class RandomDataGenerator implements HasLogger
 		final Set<Customer> customers = new HashSet<>(4096);
 
 		final int           thisYear  = Year.now().getValue();
-		final int           startYear = thisYear - this.randomMax(this.dataAmount.maxAgeOfShopsInYears()) + 1;
+		final int           startYear = thisYear - this.randomMax(this.random, this.dataAmount.maxAgeOfShopsInYears()) + 1;
 		IntStream.rangeClosed(startYear, thisYear).forEach(
 			year -> this.createPurchases(countries, year, customers)
 		);
 
-		this.customers.addAll(customers, this.storageManager);
+		/*
+		 * Sorted to assign the customers' ids in a reproducible order.
+		 */
+		this.customers.addAll(
+			customers.stream()
+				.sorted(comparingInt(Customer::customerId))
+				.collect(toList()),
+			this.storageManager
+		);
 		customers.clear();
 	}
 
@@ -401,15 +447,16 @@ public class RandomDataGenerator implements HasLogger
 	)
 	{
 		final List<Book>     books      = shop.inventory().books();
+		books.sort(Comparator.comparing(Book::isbn13)); // stable order for reproducible purchases
 		final boolean        isLeapYear = Year.of(year).isLeap();
-		final Random         random     = this.random;
+		final Random         random     = countryData.random;
 		return shop.employees().flatMap(employee ->
-			this.randomRange(this.dataAmount.maxPurchasesPerEmployeePerYear()).mapToObj(pi -> {
+			this.randomRange(random, this.dataAmount.maxPurchasesPerEmployeePerYear()).mapToObj(pi -> {
 				final Customer customer = pi % 10 == 0
-					? countryData.randomCustomer(random)
-					: countryData.randomCustomer(random, shop.address().city());
+					? countryData.randomCustomer()
+					: countryData.randomCustomer(shop.address().city());
 				final LocalDateTime timestamp = this.randomDateTime(year, isLeapYear, random);
-				final List<PurchaseItem> items = this.randomRange(this.dataAmount.maxItemsPerPurchase())
+				final List<PurchaseItem> items = this.randomRange(random, this.dataAmount.maxItemsPerPurchase())
 					.mapToObj(ii -> new PurchaseItem(books.get(random.nextInt(books.size())), random.nextInt(3) + 1))
 					.collect(toList());
 				return new Purchase(shop, employee, customer, timestamp, items);
@@ -430,9 +477,9 @@ public class RandomDataGenerator implements HasLogger
 		return LocalDateTime.of(year, month.getValue(), dayOfMonth, hour, minute);
 	}
 
-	private Book randomBook()
+	private Book randomBook(final Random random)
 	{
-		return this.bookList.get(this.random.nextInt(this.bookList.size()));
+		return this.bookList.get(random.nextInt(this.bookList.size()));
 	}
 
 	private List<Employee> createEmployees(
@@ -440,7 +487,7 @@ public class RandomDataGenerator implements HasLogger
 		final City        city
 	)
 	{
-		return this.randomRange(this.dataAmount.maxEmployeesPerShop())
+		return this.randomRange(countryData.random, this.dataAmount.maxEmployeesPerShop())
 			.mapToObj(i -> new Employee(
 				countryData.faker.name().fullName(),
 				this.createAddress(city, countryData.faker)
@@ -462,20 +509,26 @@ public class RandomDataGenerator implements HasLogger
 		);
 	}
 
-	private BigDecimal randomPurchasePrice()
+	private BigDecimal randomPurchasePrice(final Random random)
 	{
 		return this.minPrice
-			.add(new BigDecimal(Math.random()).multiply(this.priceRange));
+			.add(new BigDecimal(random.nextDouble()).multiply(this.priceRange));
 	}
 
-	private IntStream randomRange(final int upperBoundInclusive)
+	private IntStream randomRange(
+		final Random random             ,
+		final int    upperBoundInclusive
+	)
 	{
-		return IntStream.rangeClosed(0, this.randomMax(upperBoundInclusive));
+		return IntStream.rangeClosed(0, this.randomMax(random, upperBoundInclusive));
 	}
 
-	private int randomMax(final int upperBoundInclusive)
+	private int randomMax(
+		final Random random             ,
+		final int    upperBoundInclusive
+	)
 	{
-		int max = this.random.nextInt(upperBoundInclusive);
+		int max = random.nextInt(upperBoundInclusive);
 		final double minRatio;
 		if((minRatio = this.dataAmount.minRatio()) > 0)
 		{
@@ -0,0 +1,153 @@
+package one.microstream.demo.bookstore.data;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Size-bounded cache for results of analytical queries of {@link Purchases}, which are computed per year.
+ * <p>
+ * Every year has a version, which is incremented after purchases of the year have been added.
+ * The version is part of the cache keys, so results which were computed before or during
+ * an addition are never returned afterwards.
+ * The results of years without additions stay valid, until they are evicted by the size bound.
+ * <p>
+ * All operations on this type are thread safe.
+ */
+class ResultCache
+{
+	private static class Key
+	{
+		final String query    ;
+		final int    year     ;
+		final Object parameter;
+		final int    limit    ;
+		final long   version  ;
+
+		Key(
+			final String query    ,
+			final int    year     ,
+			final Object parameter,
+			final int    limit    ,
+			final long   version
+		)
+		{
+			super();
+			this.query     = query    ;
+			this.year      = year     ;
+			this.parameter = parameter;
+			this.limit     = limit    ;
+			this.version   = version  ;
+		}
+
+		@Override
+		public boolean equals(final Object obj)
+		{
+			if(this == obj)
+			{
+				return true;
+			}
+			if(!(obj instanceof Key))
+			{
+				return false;
+			}
+			final Key other = (Key)obj;
+			return this.year      == other.year
+				&& this.limit     == other.limit
+				&& this.version   == other.version
+				&& this.query.equals(other.query)
+				&& this.parameter == other.parameter
+			;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(this.query, this.year, System.identityHashCode(this.parameter), this.limit, this.version);
+		}
+	}
+
+
+	private final static int MAXIMUM_SIZE = 1024;
+
+	/*
+	 * The values are optional, since the cache doesn't accept null.
+	 */
+	private final Cache<Key, Optional<Object>> cache    = CacheBuilder.newBuilder()
+		.maximumSize(MAXIMUM_SIZE)
+		.recordStats()
+		.build();
+	private final Map<Integer, AtomicLong>     versions = new ConcurrentHashMap<>();
+
+	ResultCache()
+	{
+		super();
+	}
+
+	/**
+	 * Gets a cached result or computes it.
+	 *
+	 * @param <T> the result type
+	 * @param query the name of the query
+	 * @param year the year of the query
+	 * @param parameter an additional entity parameter, compared by identity, or <code>null</code>
+	 * @param limit an additional limit parameter, or 0
+	 * @param supplier the computing function, the result has to be immutable
+	 * @return the result, may be <code>null</code>
+	 */
+	@SuppressWarnings("unchecked")
+	<T> T get(
+		final String      query    ,
+		final int         year     ,
+		final Object      parameter,
+		final int         limit    ,
+		final Supplier<T> supplier
+	)
+	{
+		final Key key = new Key(query, year, parameter, limit, this.version(year).get());
+		try
+		{
+			return (T)this.cache.get(key, () -> Optional.ofNullable(supplier.get())).orElse(null);
+		}
+		catch(final ExecutionException | UncheckedExecutionException e)
+		{
+			Throwables.throwIfUnchecked(e.getCause());
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Invalidates all results of a year, has to be called after purchases of the year have been added.
+	 *
+	 * @param year the changed year
+	 */
+	void invalidate(final int year)
+	{
+		this.version(year).incrementAndGet();
+		this.cache.asMap().keySet().removeIf(key -> key.year == year);
+	}
+
+	/**
+	 * @return the statistics of the cache
+	 */
+	CacheStats stats()
+	{
+		return this.cache.stats();
+	}
+
+	private AtomicLong version(final int year)
+	{
+		return this.versions.computeIfAbsent(year, y -> new AtomicLong());
+	}
+
+}
@@ -0,0 +1,91 @@
+package one.microstream.demo.bookstore.data;
+
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Undo log of in-memory modifications, which are reverted if the changes could not be stored.
+ * <p>
+ * MicroStream keeps the loaded instances in memory, so the state of a modified object
+ * can't be restored by reloading it. Instead every modification records its exact inverse,
+ * and the inverses are executed in reverse order. Afterwards the objects match their stored state again.
+ * <p>
+ * Modifications may be recorded concurrently, see {@link GroupCommit}. The inverse of a modification
+ * has to be recorded while the modified object is locked, so the inverses of every object
+ * are recorded in the order of modification.
+ */
+class Rollback
+{
+	/**
+	 * Records nothing, for modifications which don't have to be reverted, e.g. of new object graphs.
+	 */
+	final static Rollback NONE = new Rollback()
+	{
+		@Override
+		void record(final Runnable undo)
+		{
+			// no-op
+		}
+	};
+
+
+	private final Deque<Runnable> undos = new ConcurrentLinkedDeque<>();
+
+	Rollback()
+	{
+		super();
+	}
+
+	/**
+	 * Records the inverse of a modification, which has just been executed.
+	 *
+	 * @param undo the inverse of the modification
+	 */
+	void record(final Runnable undo)
+	{
+		this.undos.push(undo);
+	}
+
+	/**
+	 * Records the inverses of modifications of an object, which is guarded by its monitor.
+	 * The inverses are executed while holding the monitor, so readers of the object see a consistent state.
+	 *
+	 * @param monitor the monitor guarding the modified object
+	 * @return a rollback which records into this one
+	 */
+	Rollback guardedBy(final Object monitor)
+	{
+		if(this == NONE)
+		{
+			return NONE;
+		}
+		return new Rollback()
+		{
+			@Override
+			void record(final Runnable undo)
+			{
+				Rollback.this.record(() ->
+				{
+					synchronized(monitor)
+					{
+						undo.run();
+					}
+				});
+			}
+		};
+	}
+
+	/**
+	 * Reverts all recorded modifications, the latest first.
+	 * No modifications may be recorded meanwhile.
+	 */
+	void revert()
+	{
+		Runnable undo;
+		while((undo = this.undos.poll()) != null)
+		{
+			undo.run();
+		}
+	}
+
+}
@@ -1,8 +1,14 @@
 package one.microstream.demo.bookstore.data;
 
+import static java.util.stream.Collectors.toList;
+
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
@@ -17,6 +23,9 @@ import one.microstream.storage.embedded.types.EmbeddedStorageManager;
  * <p>
  * This type is used to read and write the {@link Shop}s, their {@link Employee}s and {@link Inventory}s.
  * <p>
+ * Shops are looked up by name, city and country via hash indexes.
+ * The indexes are not persisted, they are built on first use and maintained when shops are added.
+ * <p>
  * All operations on this type are thread safe.
  *
  * @see Data#shops()
@@ -24,14 +33,61 @@ import one.microstream.storage.embedded.types.EmbeddedStorageManager;
  */
 public class Shops extends ReadWriteLocked
 {
+	/**
+	 * Lookup indexes of the shops, derived from the list.
+	 * <p>
+	 * Note that this class doesn't need to handle concurrency in any way,
+	 * since it is only used by {@link Shops} which handles thread safety.
+	 */
+	private static class Indexes
+	{
+		final Map<String, Shop>        nameToShop     = new HashMap<>();
+		final Map<City, List<Shop>>    cityToShops    = new HashMap<>();
+		final Map<Country, List<Shop>> countryToShops = new HashMap<>();
+
+		Indexes(final List<Shop> shops)
+		{
+			super();
+			shops.forEach(this::add);
+		}
+
+		void add(final Shop shop)
+		{
+			final City    city    = shop.address().city();
+			final Country country = city.state().country();
+			this.nameToShop.putIfAbsent(shop.name(), shop);
+			this.cityToShops.computeIfAbsent(city, c -> new ArrayList<>()).add(shop);
+			this.countryToShops.computeIfAbsent(country, c -> new ArrayList<>()).add(shop);
+		}
+	}
+
+
 	/**
 	 * Simple list to hold the shops.
 	 */
 	private final List<Shop> shops = new ArrayList<>(1024);
 
-	public Shops()
+	/**
+	 * Inverted index of all inventories, to find the shops which carry a book.
+	 */
+	private final StockIndex stockIndex = new StockIndex();
+
+	/**
+	 * Registry of the shops' countries, states and cities.
+	 */
+	private final Geography  geography ;
+
+	private transient volatile Indexes indexes;
+
+	/*
+	 * The last assigned id of employees, shops use their position in the list.
+	 */
+	private int lastEmployeeId;
+
+	public Shops(final Geography geography)
 	{
 		super();
+		this.geography = geography;
 	}
 	
 	/**
@@ -59,8 +115,12 @@ public class Shops extends ReadWriteLocked
 	)
 	{
 		this.write(() -> {
-			this.shops.add(shop);
-			persister.store(this.shops);
+			final List<Object>             changedObjects = new ArrayList<>();
+			final List<Entry<Book, Stock>> stocks         = new ArrayList<>();
+			this.geography.addAll(List.of(shop.address().city()), persister);
+			this.addShop(shop, changedObjects, stocks);
+			this.storeAll(changedObjects, persister);
+			this.stockIndex.addAll(stocks, persister);
 		});
 	}
 
@@ -89,11 +149,85 @@ public class Shops extends ReadWriteLocked
 	)
 	{
 		this.write(() -> {
-			this.shops.addAll(shops);
-			persister.store(this.shops);
+			final List<Object>             changedObjects = new ArrayList<>();
+			final List<Entry<Book, Stock>> stocks         = new ArrayList<>();
+			this.geography.addAll(
+				shops.stream().map(shop -> shop.address().city()).collect(toList()),
+				persister
+			);
+			shops.forEach(shop -> this.addShop(shop, changedObjects, stocks));
+			this.storeAll(changedObjects, persister);
+			this.stockIndex.addAll(stocks, persister);
 		});
 	}
 
+	/**
+	 * Adds a shop to the list and assigns the ids of the shop and its employees.
+	 * The shop's city has to be registered in the {@link Geography} already.
+	 * The shop's inventory is attached to the stock index, and counted if the stock totals are in use.
+	 *
+	 * @param shop the shop to add
+	 * @param changedObjects collector for already stored objects which got an id
+	 * @param stocks collector for the stocks of the shop's inventory
+	 */
+	private void addShop(
+		final Shop                     shop          ,
+		final List<Object>             changedObjects,
+		final List<Entry<Book, Stock>> stocks
+	)
+	{
+		shop.assignId(() -> this.shops.size() + 1);
+		shop.employees().forEach(employee -> employee.assignId(() -> ++this.lastEmployeeId));
+		final Inventory inventory = shop.inventory();
+		stocks.addAll(inventory.attach(shop, this.stockIndex));
+		changedObjects.add(inventory);
+		final InventoryTotals totals = this.stockIndex.totals();
+		if(totals != null)
+		{
+			inventory.count(totals);
+		}
+		this.shops.add(shop);
+		if(this.indexes != null)
+		{
+			this.indexes.add(shop);
+		}
+	}
+
+	/**
+	 * Gets the lookup indexes, they are transient and built on first use.
+	 * The caller has to hold the lock.
+	 */
+	private Indexes indexes()
+	{
+		/*
+		 * Double-checked locking to reduce the overhead of acquiring a lock
+		 * by testing the locking criterion.
+		 * The field (this.indexes) has to be volatile.
+		 */
+		Indexes indexes = this.indexes;
+		if(indexes == null)
+		{
+			synchronized(this)
+			{
+				if((indexes = this.indexes) == null)
+				{
+					this.indexes = indexes = new Indexes(this.shops);
+				}
+			}
+		}
+		return indexes;
+	}
+
+	private void storeAll(
+		final List<Object> changedObjects,
+		final Persister    persister
+	)
+	{
+		changedObjects.add(this.shops);
+		changedObjects.add(this);
+		persister.storeAll(changedObjects);
+	}
+
 	/**
 	 * Gets the total amount of all shops.
 	 *
@@ -128,8 +262,10 @@ public class Shops extends ReadWriteLocked
 	public void clear()
 	{
 		this.write(() ->
-			this.shops.forEach(Shop::clear)
-		);
+		{
+			this.shops.forEach(Shop::clear);
+			this.stockIndex.clear();
+		});
 	}
 
 	/**
@@ -168,6 +304,122 @@ public class Shops extends ReadWriteLocked
 		);
 	}
 
+	/**
+	 * Gets the inventory items of a specific book in all shops which have it in stock.
+	 * <p>
+	 * The shops are looked up in an inverted index, so the inventories of all other shops are not loaded.
+	 *
+	 * @param book the book to search by
+	 * @return the inventory items of the book
+	 */
+	public List<InventoryItem> availability(final Book book)
+	{
+		final List<InventoryItem> items = new ArrayList<>();
+		for(final Stock stock : this.stockIndex.stocks(book))
+		{
+			/*
+			 * Read only once, the amount may be changed concurrently.
+			 */
+			final int amount = stock.amount();
+			if(amount > 0)
+			{
+				items.add(new InventoryItem(stock.shop(), book, amount));
+			}
+		}
+		return items;
+	}
+
+	/**
+	 * Gets the total stock of all shops, and the totals per genre and per country.
+	 * <p>
+	 * The totals are counted on the first call, which loads the inventories of all shops.
+	 * From then on they are maintained with every change of an inventory.
+	 *
+	 * @return the inventory summary
+	 */
+	public InventorySummary inventorySummary()
+	{
+		final InventoryTotals totals = this.totals();
+		return this.read(
+			totals::summary
+		);
+	}
+
+	/**
+	 * Gets the total stock of a specific book in all shops.
+	 *
+	 * @param book the book
+	 * @return the stock summary of the book
+	 * @see #inventorySummary()
+	 */
+	public StockSummary inventorySummary(final Book book)
+	{
+		final InventoryTotals totals = this.totals();
+		return this.read(() ->
+			totals.book(book)
+		);
+	}
+
+	/**
+	 * Gets the total stock of all books of a specific genre in all shops.
+	 *
+	 * @param genre the genre
+	 * @return the stock summary of the genre
+	 * @see #inventorySummary()
+	 */
+	public StockSummary inventorySummary(final Genre genre)
+	{
+		final InventoryTotals totals = this.totals();
+		return this.read(() ->
+			totals.genre(genre)
+		);
+	}
+
+	/**
+	 * Gets the total stock of all shops in a specific country.
+	 *
+	 * @param country the country
+	 * @return the stock summary of the country
+	 * @see #inventorySummary()
+	 */
+	public StockSummary inventorySummary(final Country country)
+	{
+		final InventoryTotals totals = this.totals();
+		return this.read(() ->
+			totals.country(country)
+		);
+	}
+
+	/**
+	 * Gets the stock totals, counts them on first use.
+	 * <p>
+	 * The totals are counted under the write lock, the summaries are read under the read lock,
+	 * so no partially counted totals are read.
+	 */
+	private InventoryTotals totals()
+	{
+		final InventoryTotals totals = this.stockIndex.totals();
+		if(totals != null)
+		{
+			return totals;
+		}
+		return this.write(() ->
+		{
+			InventoryTotals created = this.stockIndex.totals();
+			if(created == null)
+			{
+				/*
+				 * Set before counting, so changes of already counted inventories are not missed.
+				 */
+				created = new InventoryTotals();
+				this.stockIndex.totals(created);
+				final InventoryTotals counted = created;
+				this.shops.parallelStream().forEach(shop -> shop.inventory().count(counted));
+			}
+			return created;
+		});
+	}
+
 	/**
 	 * Gets the shop with a specific name or <code>null</code> if none was found.
 	 *
@@ -177,10 +429,35 @@ public class Shops extends ReadWriteLocked
 	public Shop ofName(final String name)
 	{
 		return this.read(() ->
-			this.shops.stream()
-				.filter(shop -> shop.name().equals(name))
-				.findAny()
-				.orElse(null)
+			this.indexes().nameToShop.get(name)
+		);
+	}
+
+	/**
+	 * Gets all shops in a specific city.
+	 * Modifications to the returned list are not reflected to the backed data.
+	 *
+	 * @param city the city to search by
+	 * @return the shops in the city
+	 */
+	public List<Shop> ofCity(final City city)
+	{
+		return this.read(() ->
+			new ArrayList<>(this.indexes().cityToShops.getOrDefault(city, Collections.emptyList()))
+		);
+	}
+
+	/**
+	 * Gets all shops in a specific country.
+	 * Modifications to the returned list are not reflected to the backed data.
+	 *
+	 * @param country the country to search by
+	 * @return the shops in the country
+	 */
+	public List<Shop> ofCountry(final Country country)
+	{
+		return this.read(() ->
+			new ArrayList<>(this.indexes().countryToShops.getOrDefault(country, Collections.emptyList()))
 		);
 	}
 
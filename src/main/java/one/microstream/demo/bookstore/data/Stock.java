@@ -0,0 +1,49 @@
+package one.microstream.demo.bookstore.data;
+
+/**
+ * Entry of the {@link StockIndex}, the slot of a book in the {@link Inventory} of a shop.
+ * <p>
+ * The amount is not copied, it is read from the counter chunk which is shared with the inventory.
+ * So it is always up to date, without loading the whole inventory.
+ * <p>
+ * This type is immutable and therefor inherently thread safe.
+ */
+class Stock
+{
+	private final Shop  shop   ;
+	private final int[] amounts;
+	private final int   index  ;
+
+	Stock(
+		final Shop  shop   ,
+		final int[] amounts,
+		final int   index
+	)
+	{
+		super();
+		this.shop    = shop;
+		this.amounts = amounts;
+		this.index   = index;
+	}
+
+	/**
+	 * Get the shop which holds the book
+	 *
+	 * @return the shop
+	 */
+	Shop shop()
+	{
+		return this.shop;
+	}
+
+	/**
+	 * Get the current amount of the book in the shop's inventory
+	 *
+	 * @return the amount, zero or positive
+	 */
+	int amount()
+	{
+		return Inventory.amount(this.amounts, this.index);
+	}
+
+}
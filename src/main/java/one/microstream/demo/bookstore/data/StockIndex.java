@@ -0,0 +1,184 @@
+package one.microstream.demo.bookstore.data;
+
+import static one.microstream.demo.bookstore.util.LazyUtils.clearIfStored;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import one.microstream.demo.bookstore.util.concurrent.ReadWriteLocked;
+import one.microstream.persistence.types.Persister;
+import one.microstream.reference.Lazy;
+
+/**
+ * Inverted index of the {@link Inventory}s of all shops, which holds the {@link Stock}s of every book.
+ * So the shops which carry a book are found without loading the inventories of all shops.
+ * <p>
+ * The books are partitioned by their id into buckets, which are persisted and loaded lazily.
+ * A new slot in an inventory adds a stock to the index, see {@link Inventory#attach(Shop, StockIndex)}.
+ * Slots are never removed, stocks with an amount of zero are kept.
+ * <p>
+ * The index also holds the {@link InventoryTotals}, once they are counted, and passes the changes
+ * of all inventories on to them.
+ * <p>
+ * All operations on this type are thread safe.
+ *
+ * @see Shops#availability(Book)
+ * @see ReadWriteLocked
+ */
+class StockIndex extends ReadWriteLocked
+{
+	private final static int BOOKS_PER_BUCKET = 1024;
+
+	private final              List<Lazy<Map<Book, Stock[]>>> buckets = new ArrayList<>();
+	private transient volatile InventoryTotals                totals ;
+
+	StockIndex()
+	{
+		super();
+	}
+
+	/**
+	 * Gets the stocks of a book in all shops which carry it.
+	 *
+	 * @param book the book
+	 * @return the stocks of the book
+	 */
+	List<Stock> stocks(final Book book)
+	{
+		return this.read(() ->
+		{
+			final int bucketIndex = bucketIndex(book);
+			if(bucketIndex >= this.buckets.size())
+			{
+				return new ArrayList<>();
+			}
+			final Stock[] stocks = this.buckets.get(bucketIndex).get().get(book);
+			return stocks != null
+				? new ArrayList<>(Arrays.asList(stocks))
+				: new ArrayList<>();
+		});
+	}
+
+	/**
+	 * Adds stocks to the index and stores the changed buckets with the given persister.
+	 *
+	 * @param stocks the books and their new stocks
+	 * @param persister the persister to store the changes with
+	 */
+	void addAll(
+		final Collection<Entry<Book, Stock>> stocks   ,
+		final Persister                      persister
+	)
+	{
+		if(stocks.isEmpty())
+		{
+			return;
+		}
+
+		this.write(() ->
+		{
+			final Set<Object> changedObjects = Collections.newSetFromMap(new IdentityHashMap<>());
+			for(final Entry<Book, Stock> entry : stocks)
+			{
+				final Map<Book, Stock[]> bucket  = this.ensureBucket(entry.getKey(), changedObjects);
+				final Stock[]            current = bucket.get(entry.getKey());
+				final Stock[]            updated;
+				if(current == null)
+				{
+					updated = new Stock[] { entry.getValue() };
+				}
+				else
+				{
+					updated = Arrays.copyOf(current, current.length + 1);
+					updated[current.length] = entry.getValue();
+				}
+				bucket.put(entry.getKey(), updated);
+				changedObjects.add(bucket);
+			}
+			/*
+			 * Stored under the write lock, so the buckets are stored in the order of modification.
+			 */
+			persister.storeAll(changedObjects);
+		});
+	}
+
+	private Map<Book, Stock[]> ensureBucket(
+		final Book        book          ,
+		final Set<Object> changedObjects
+	)
+	{
+		final int bucketIndex = bucketIndex(book);
+		while(this.buckets.size() <= bucketIndex)
+		{
+			this.buckets.add(Lazy.Reference(new HashMap<>()));
+			changedObjects.add(this.buckets);
+		}
+		return this.buckets.get(bucketIndex).get();
+	}
+
+	private static int bucketIndex(final Book book)
+	{
+		return book.id() / BOOKS_PER_BUCKET;
+	}
+
+	/**
+	 * Gets the stock totals, or <code>null</code> if they were not counted yet.
+	 *
+	 * @return the stock totals or <code>null</code>
+	 */
+	InventoryTotals totals()
+	{
+		return this.totals;
+	}
+
+	/**
+	 * Sets the stock totals, which get the changes of all inventories from then on.
+	 *
+	 * @param totals the stock totals
+	 */
+	void totals(final InventoryTotals totals)
+	{
+		this.totals = totals;
+	}
+
+	/**
+	 * Passes a change of an inventory on to the stock totals, if they were counted already.
+	 * The caller has to hold the inventory's lock.
+	 *
+	 * @param shop the shop of the inventory
+	 * @param book the changed book
+	 * @param delta the added or, if negative, removed amount
+	 */
+	void change(
+		final Shop shop ,
+		final Book book ,
+		final int  delta
+	)
+	{
+		final InventoryTotals totals = this.totals;
+		if(totals != null)
+		{
+			totals.change(shop, book, delta);
+		}
+	}
+
+	/**
+	 * Clears all {@link Lazy} references of the buckets.
+	 * This frees the used memory but you do not lose the persisted data. It is loaded again on demand.
+	 */
+	void clear()
+	{
+		this.write(() ->
+			this.buckets.forEach(bucket -> clearIfStored(bucket))
+		);
+	}
+
+}
@@ -0,0 +1,80 @@
+package one.microstream.demo.bookstore.data;
+
+import java.util.Objects;
+
+import javax.money.MonetaryAmount;
+
+/**
+ * Total stock of a book, genre or country in the inventories of all shops:
+ * the amount of books and their value by purchase price.
+ * <p>
+ * This type is immutable and therefor inherently thread safe.
+ *
+ * @see Shops#inventorySummary()
+ */
+public class StockSummary
+{
+	private final String         name    ;
+	private final long           quantity;
+	private final MonetaryAmount value   ;
+
+	/**
+	 * Constructor to create a new {@link StockSummary} instance.
+	 *
+	 * @param name not <code>null</code>
+	 * @param quantity the amount of books
+	 * @param value the value of the books by purchase price, not <code>null</code>
+	 */
+	public StockSummary(
+		final String         name    ,
+		final long           quantity,
+		final MonetaryAmount value
+	)
+	{
+		super();
+		this.name     = Objects.requireNonNull(name, () -> "Name cannot be null");
+		this.quantity = quantity;
+		this.value    = Objects.requireNonNull(value, () -> "Value cannot be null");
+	}
+
+	/**
+	 * Get the name of the summarized book, genre or country
+	 *
+	 * @return the name
+	 */
+	public String name()
+	{
+		return this.name;
+	}
+
+	/**
+	 * Get the amount of books in stock
+	 *
+	 * @return the quantity
+	 */
+	public long quantity()
+	{
+		return this.quantity;
+	}
+
+	/**
+	 * Get the value of the books in stock, by purchase price
+	 *
+	 * @return the stock value
+	 */
+	public MonetaryAmount value()
+	{
+		return this.value;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "StockSummary"
+			+ " [name="     + this.name
+			+ ", quantity=" + this.quantity
+			+ ", value="    + this.value
+			+ "]";
+	}
+
+}
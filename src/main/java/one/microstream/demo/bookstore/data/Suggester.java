@@ -0,0 +1,348 @@
+package one.microstream.demo.bookstore.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Immutable, in-memory prefix suggester for type-ahead.
+ * <p>
+ * Every text is registered with a key for each word it contains, starting at that word,
+ * so a prefix matches the beginning of any word, e.g. "hea" matches "The Heart of Darkness".
+ * A key is not a copy of the text's remainder, but the offset of the word in the text,
+ * so the memory grows linearly with the length of the texts.
+ * <p>
+ * The keys are held in sorted runs, a lookup is a binary search in every run and a merged scan
+ * over the matching ranges. Additional texts are added as a new run, runs of similar size are merged,
+ * so every key is only copied a logarithmic number of times and there are only a few runs.
+ * <p>
+ * This type is immutable and therefor inherently thread safe.
+ */
+class Suggester
+{
+	/**
+	 * Immutable run of texts and their keys, sorted by key and text.
+	 */
+	private static class Run
+	{
+		final String[] texts     ;
+		/*
+		 * The lower case texts, the keys refer to.
+		 */
+		final String[] normalized;
+		/*
+		 * Sorted keys, with the index of the text in the upper and the offset of the word in the lower 32 bits.
+		 */
+		final long[]   keys      ;
+
+		Run(final Collection<String> texts)
+		{
+			super();
+
+			this.texts      = texts.toArray(new String[texts.size()]);
+			this.normalized = new String[this.texts.length];
+			long[] keys     = new long[this.texts.length * 4];
+			int    size     = 0;
+			for(int index = 0; index < this.texts.length; index++)
+			{
+				final String normalized = this.normalized[index] = normalize(this.texts[index]);
+				for(int offset = 0; offset < normalized.length(); offset++)
+				{
+					if(Character.isLetterOrDigit(normalized.charAt(offset))
+						&& (offset == 0 || !Character.isLetterOrDigit(normalized.charAt(offset - 1)))
+					)
+					{
+						if(size == keys.length)
+						{
+							keys = Arrays.copyOf(keys, size * 2 + 1);
+						}
+						keys[size++] = key(index, offset);
+					}
+				}
+			}
+			this.keys = this.sort(Arrays.copyOf(keys, size));
+		}
+
+		private Run(
+			final String[] texts     ,
+			final String[] normalized,
+			final long[]   keys
+		)
+		{
+			super();
+
+			this.texts      = texts     ;
+			this.normalized = normalized;
+			this.keys       = keys      ;
+		}
+
+		int size()
+		{
+			return this.keys.length;
+		}
+
+		String text(final int position)
+		{
+			return this.texts[index(this.keys[position])];
+		}
+
+		/**
+		 * Sorts keys by their text's remainder, without creating substrings.
+		 */
+		private long[] sort(final long[] keys)
+		{
+			return Arrays.stream(keys)
+				.boxed()
+				.sorted((key1, key2) -> compare(this, key1, this, key2))
+				.mapToLong(Long::longValue)
+				.toArray();
+		}
+
+		/**
+		 * Merges two runs into a new one, keys which are registered in both runs are only taken once.
+		 */
+		Run merge(final Run other)
+		{
+			final int      shift      = this.texts.length;
+			final String[] texts      = Arrays.copyOf(this.texts     , shift + other.texts.length);
+			final String[] normalized = Arrays.copyOf(this.normalized, shift + other.texts.length);
+			System.arraycopy(other.texts     , 0, texts     , shift, other.texts.length);
+			System.arraycopy(other.normalized, 0, normalized, shift, other.texts.length);
+
+			final long[] keys = new long[this.keys.length + other.keys.length];
+			int          size = 0;
+			int          i    = 0;
+			int          j    = 0;
+			while(i < this.keys.length || j < other.keys.length)
+			{
+				final int result = i == this.keys.length
+					? 1
+					: j == other.keys.length
+						? -1
+						: compare(this, this.keys[i], other, other.keys[j]);
+				if(result <= 0)
+				{
+					keys[size++] = this.keys[i++];
+					if(result == 0)
+					{
+						// already registered
+						j++;
+					}
+				}
+				else
+				{
+					final long key = other.keys[j++];
+					keys[size++] = key(index(key) + shift, offset(key));
+				}
+			}
+			return new Run(texts, normalized, Arrays.copyOf(keys, size));
+		}
+
+		/**
+		 * Binary search for the first key which is greater than or equal to the given prefix.
+		 */
+		int firstPositionNotBefore(final String prefix)
+		{
+			int low  = 0;
+			int high = this.keys.length;
+			while(low < high)
+			{
+				final int    middle = (low + high) >>> 1;
+				final long   key    = this.keys[middle];
+				final String text   = this.normalized[index(key)];
+				if(compareRegions(text, offset(key), prefix, 0) < 0)
+				{
+					low = middle + 1;
+				}
+				else
+				{
+					high = middle;
+				}
+			}
+			return low;
+		}
+
+		boolean matches(
+			final int    position,
+			final String prefix
+		)
+		{
+			final long key = this.keys[position];
+			return this.normalized[index(key)].startsWith(prefix, offset(key));
+		}
+
+		static long key(
+			final int index ,
+			final int offset
+		)
+		{
+			return (long)index << 32 | offset;
+		}
+
+		static int index(final long key)
+		{
+			return (int)(key >>> 32);
+		}
+
+		static int offset(final long key)
+		{
+			return (int)key;
+		}
+
+		/**
+		 * Compares two keys by the remainders of their texts, and by the texts if the remainders are equal.
+		 */
+		static int compare(
+			final Run  run1,
+			final long key1,
+			final Run  run2,
+			final long key2
+		)
+		{
+			final int result = compareRegions(
+				run1.normalized[index(key1)], offset(key1),
+				run2.normalized[index(key2)], offset(key2)
+			);
+			return result != 0
+				? result
+				: run1.texts[index(key1)].compareTo(run2.texts[index(key2)]);
+		}
+
+		/**
+		 * Compares the remainders of two strings lexicographically, like {@link String#compareTo(String)}.
+		 */
+		static int compareRegions(
+			final String string1,
+			final int    offset1,
+			final String string2,
+			final int    offset2
+		)
+		{
+			final int length1 = string1.length() - offset1;
+			final int length2 = string2.length() - offset2;
+			for(int i = 0, length = Math.min(length1, length2); i < length; i++)
+			{
+				final char char1 = string1.charAt(offset1 + i);
+				final char char2 = string2.charAt(offset2 + i);
+				if(char1 != char2)
+				{
+					return char1 - char2;
+				}
+			}
+			return length1 - length2;
+		}
+	}
+
+
+	/*
+	 * Sorted runs of decreasing size.
+	 */
+	private final Run[] runs;
+
+	/**
+	 * Creates a new suggester for the given texts.
+	 *
+	 * @param texts the texts to suggest
+	 */
+	Suggester(final Collection<String> texts)
+	{
+		this(new Run[] { new Run(texts) });
+	}
+
+	private Suggester(final Run[] runs)
+	{
+		super();
+
+		this.runs = runs;
+	}
+
+	/**
+	 * Creates a new suggester with additional texts.
+	 * The keys of the new texts are sorted in a new run, which is merged with the existing runs of similar size.
+	 * The other runs are shared with this suggester.
+	 *
+	 * @param texts the additional texts to suggest
+	 * @return the new suggester, or this one if there are no additional texts
+	 */
+	Suggester with(final Collection<String> texts)
+	{
+		if(texts.isEmpty())
+		{
+			return this;
+		}
+
+		final List<Run> runs = new ArrayList<>(Arrays.asList(this.runs));
+		Run             run  = new Run(texts);
+		while(!runs.isEmpty() && runs.get(runs.size() - 1).size() <= run.size() * 2)
+		{
+			run = runs.remove(runs.size() - 1).merge(run);
+		}
+		runs.add(run);
+		return new Suggester(runs.toArray(new Run[runs.size()]));
+	}
+
+	/**
+	 * Gets the texts which contain a word starting with the given prefix, case insensitive.
+	 *
+	 * @param prefix the prefix to search for, may be <code>null</code>
+	 * @param limit the maximum amount of suggestions
+	 * @return the distinct matching texts, ordered by the matching part
+	 */
+	List<String> suggest(
+		final String prefix,
+		final int    limit
+	)
+	{
+		final String normalized = prefix != null
+			? normalize(prefix).strip()
+			: "";
+		if(normalized.isEmpty() || limit <= 0)
+		{
+			return new ArrayList<>();
+		}
+
+		final int[] positions = new int[this.runs.length];
+		for(int i = 0; i < this.runs.length; i++)
+		{
+			positions[i] = this.runs[i].firstPositionNotBefore(normalized);
+		}
+
+		final Set<String> result = new LinkedHashSet<>();
+		while(result.size() < limit)
+		{
+			/*
+			 * Takes the least matching key of all runs.
+			 */
+			int next = -1;
+			for(int i = 0; i < this.runs.length; i++)
+			{
+				final Run run = this.runs[i];
+				if(positions[i] < run.size()
+					&& run.matches(positions[i], normalized)
+					&& (next < 0
+						|| Run.compare(run, run.keys[positions[i]], this.runs[next], this.runs[next].keys[positions[next]]) < 0
+					)
+				)
+				{
+					next = i;
+				}
+			}
+			if(next < 0)
+			{
+				break;
+			}
+			result.add(this.runs[next].text(positions[next]++));
+		}
+		return new ArrayList<>(result);
+	}
+
+	private static String normalize(final String text)
+	{
+		return text.toLowerCase(Locale.ROOT);
+	}
+
+}
@@ -0,0 +1,192 @@
+package one.microstream.demo.bookstore.data;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Incrementally maintained totals of long values per entity, e.g. sold amounts or revenue in cents.
+ * <p>
+ * The totals are indexed by the entities' {@link Named#id() ids} and held in fixed-size pages
+ * of primitive longs, so storing an addition only writes the affected page.
+ * Pages are created on demand, so sparsely used id ranges don't occupy any memory.
+ * <p>
+ * Note that this class doesn't need to handle concurrency in any way,
+ * since it is only used by {@link Purchases} which handles thread safety.
+ *
+ * @param <K> the key type
+ */
+class Totals<K extends Named>
+{
+	private final static int PAGE_SIZE = 256;
+
+	/**
+	 * The keys and totals, the slot of an entity is its id - 1.
+	 */
+	private Object[][] keyPages   = new Object[0][];
+	private long[][]   totalPages = new long[0][];
+	private int        size       = 0;
+
+	Totals()
+	{
+		super();
+	}
+
+	/**
+	 * Adds a value to the total of a key.
+	 *
+	 * @param key the key
+	 * @param value the value to add
+	 * @param changedObjects collector for the objects which have to be stored
+	 * @param rollback records how to revert the addition
+	 */
+	void add(
+		final K                  key           ,
+		final long               value         ,
+		final Collection<Object> changedObjects,
+		final Rollback           rollback
+	)
+	{
+		final Object[][] previousKeyPages   = this.keyPages;
+		final long[][]   previousTotalPages = this.totalPages;
+		final int        slot               = slot(key);
+		final int        page               = slot / PAGE_SIZE;
+		if(page >= this.totalPages.length)
+		{
+			this.keyPages   = Arrays.copyOf(this.keyPages,   page + 1);
+			this.totalPages = Arrays.copyOf(this.totalPages, page + 1);
+			changedObjects.add(this);
+		}
+		final boolean newPage = this.totalPages[page] == null;
+		if(newPage)
+		{
+			this.keyPages  [page] = new Object[PAGE_SIZE];
+			this.totalPages[page] = new long[PAGE_SIZE];
+			changedObjects.add(this.keyPages);
+			changedObjects.add(this.totalPages);
+		}
+
+		final Object[] keys   = this.keyPages[page];
+		final boolean  newKey = keys[slot % PAGE_SIZE] == null;
+		if(newKey)
+		{
+			keys[slot % PAGE_SIZE] = key;
+			this.size++;
+			changedObjects.add(keys);
+			changedObjects.add(this);
+		}
+
+		final long[] totals = this.totalPages[page];
+		totals[slot % PAGE_SIZE] += value;
+		changedObjects.add(totals);
+
+		rollback.record(() ->
+		{
+			totals[slot % PAGE_SIZE] -= value;
+			if(newKey)
+			{
+				keys[slot % PAGE_SIZE] = null;
+				this.size--;
+			}
+			if(newPage)
+			{
+				this.keyPages  [page] = null;
+				this.totalPages[page] = null;
+			}
+			this.keyPages   = previousKeyPages;
+			this.totalPages = previousTotalPages;
+		});
+	}
+
+	/**
+	 * Gets the total of a key.
+	 *
+	 * @param key the key
+	 * @return the total of the key or 0
+	 */
+	long get(final K key)
+	{
+		final int slot = slot(key);
+		final int page = slot / PAGE_SIZE;
+		return page < this.totalPages.length && this.totalPages[page] != null
+			? this.totalPages[page][slot % PAGE_SIZE]
+			: 0L;
+	}
+
+	/**
+	 * Gets the number of keys, including the ones with a total of zero.
+	 *
+	 * @return the number of keys
+	 */
+	int size()
+	{
+		return this.size;
+	}
+
+	/**
+	 * Performs an action for all keys with a total other than zero.
+	 *
+	 * @param action the action to perform
+	 */
+	@SuppressWarnings("unchecked")
+	void forEach(final ObjLongConsumer<? super K> action)
+	{
+		for(int page = 0; page < this.totalPages.length; page++)
+		{
+			final long[] totals = this.totalPages[page];
+			if(totals == null)
+			{
+				continue;
+			}
+			final Object[] keys = this.keyPages[page];
+			for(int i = 0; i < PAGE_SIZE; i++)
+			{
+				if(totals[i] != 0L)
+				{
+					action.accept((K)keys[i], totals[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the key with the highest total.
+	 *
+	 * @return the key with the highest total or <code>null</code> if there are no totals
+	 */
+	@SuppressWarnings("unchecked")
+	K maxKey()
+	{
+		Object maxKey   = null;
+		long   maxTotal = Long.MIN_VALUE;
+		for(int page = 0; page < this.totalPages.length; page++)
+		{
+			final long[] totals = this.totalPages[page];
+			if(totals == null)
+			{
+				continue;
+			}
+			final Object[] keys = this.keyPages[page];
+			for(int i = 0; i < PAGE_SIZE; i++)
+			{
+				if(keys[i] != null && totals[i] > maxTotal)
+				{
+					maxKey   = keys[i];
+					maxTotal = totals[i];
+				}
+			}
+		}
+		return (K)maxKey;
+	}
+
+	private static int slot(final Named key)
+	{
+		final int id = key.id();
+		if(id <= 0)
+		{
+			throw new IllegalArgumentException("No id assigned: " + key);
+		}
+		return id - 1;
+	}
+
+}
@@ -1,5 +1,7 @@
 package one.microstream.demo.bookstore.graphql;
 
+import static one.microstream.demo.bookstore.BookStoreDemo.money;
+
 import java.util.Collections;
 import java.util.List;
 
@@ -9,10 +11,15 @@ import org.springframework.stereotype.Component;
 import graphql.kickstart.tools.GraphQLQueryResolver;
 import one.microstream.demo.bookstore.BookStoreDemo;
 import one.microstream.demo.bookstore.data.Book;
+import one.microstream.demo.bookstore.data.BookQuery;
 import one.microstream.demo.bookstore.data.BookSales;
+import one.microstream.demo.bookstore.data.BookSearchResult;
 import one.microstream.demo.bookstore.data.Country;
 import one.microstream.demo.bookstore.data.Employee;
+import one.microstream.demo.bookstore.data.Genre;
+import one.microstream.demo.bookstore.data.InventorySummary;
 import one.microstream.demo.bookstore.data.Purchase;
+import one.microstream.demo.bookstore.data.StockSummary;
 
 @Component
 public class BookStoreQueryResolver implements GraphQLQueryResolver
@@ -27,18 +34,62 @@ public class BookStoreQueryResolver implements GraphQLQueryResolver
 
 	private Country countryByCode(final String countryCode)
 	{
-		return this.bookStoreDemo.data().shops().compute(shops ->
-			shops
-				.map(s -> s.address().city().state().country())
-				.filter(c -> c.code().equalsIgnoreCase(countryCode))
-				.findAny()
-				.orElse(null)
+		return this.bookStoreDemo.data().geography().countryOfCode(countryCode);
+	}
+
+	private Genre genreByName(final String genreName)
+	{
+		return this.bookStoreDemo.data().books().genres().stream()
+			.filter(genre -> genre.name().equals(genreName))
+			.findFirst()
+			.orElse(null);
+	}
+
+	public List<Book> booksByTitle(final String title, final Integer offset, final Integer limit)
+	{
+		return this.bookStoreDemo.data().books().searchByTitle(
+			title,
+			offset == null ? 0 : offset,
+			limitOrAll(limit)
 		);
 	}
 
-	public List<Book> booksByTitle(final String title)
+	public BookSearchResult searchBooks(
+		final String  title         ,
+		final String  author        ,
+		final String  genre         ,
+		final String  publisher     ,
+		final String  language      ,
+		final Double  minRetailPrice,
+		final Double  maxRetailPrice,
+		final Integer offset        ,
+		final Integer limit
+	)
 	{
-		return this.bookStoreDemo.data().books().searchByTitle(title);
+		final BookQuery query = new BookQuery()
+			.title(title)
+			.author(author)
+			.genre(genre)
+			.publisher(publisher)
+			.language(language)
+			.retailPrice(
+				minRetailPrice == null ? null : money(minRetailPrice),
+				maxRetailPrice == null ? null : money(maxRetailPrice)
+			);
+		if(offset != null)
+		{
+			query.offset(offset);
+		}
+		if(limit != null)
+		{
+			query.limit(limit);
+		}
+		return this.bookStoreDemo.data().books().search(query);
+	}
+
+	public List<String> suggestBooks(final String prefix, final Integer limit)
+	{
+		return this.bookStoreDemo.data().books().suggest(prefix, limitOrAll(limit));
 	}
 
 	public Employee employeeOfTheYear(final int year)
@@ -46,20 +97,59 @@ public class BookStoreQueryResolver implements GraphQLQueryResolver
 		return this.bookStoreDemo.data().purchases().employeeOfTheYear(year);
 	}
 
-	public List<BookSales> bestSellerList(final int year)
+	public List<BookSales> bestSellerList(final int year, final Integer limit)
 	{
-		return this.bookStoreDemo.data().purchases().bestSellerList(year);
+		return this.bookStoreDemo.data().purchases().bestSellerList(year, limitOrAll(limit));
 	}
 
-	public List<BookSales> bestSellerListByCountry(final int year, final String countryCode)
+	public List<BookSales> bestSellerListByCountry(final int year, final String countryCode, final Integer limit)
 	{
 		final Country country = this.countryByCode(countryCode);
 		return country == null
 			? Collections.emptyList()
-			: this.bookStoreDemo.data().purchases().bestSellerList(year, country)
+			: this.bookStoreDemo.data().purchases().bestSellerList(year, country, limitOrAll(limit))
+		;
+	}
+
+	public InventorySummary inventorySummary()
+	{
+		return this.bookStoreDemo.data().shops().inventorySummary();
+	}
+
+	public StockSummary inventorySummaryByBook(final String isbn13)
+	{
+		final Book book = this.bookStoreDemo.data().books().ofIsbn13(isbn13);
+		return book == null
+			? null
+			: this.bookStoreDemo.data().shops().inventorySummary(book)
+		;
+	}
+
+	public StockSummary inventorySummaryByGenre(final String genreName)
+	{
+		final Genre genre = this.genreByName(genreName);
+		return genre == null
+			? null
+			: this.bookStoreDemo.data().shops().inventorySummary(genre)
 		;
 	}
 
+	public StockSummary inventorySummaryByCountry(final String countryCode)
+	{
+		final Country country = this.countryByCode(countryCode);
+		return country == null
+			? null
+			: this.bookStoreDemo.data().shops().inventorySummary(country)
+		;
+	}
+
+	private static int limitOrAll(final Integer limit)
+	{
+		return limit == null
+			? Integer.MAX_VALUE
+			: limit;
+	}
+
 	public List<Purchase> purchasesOfForeigners(final int year)
 	{
 		return this.bookStoreDemo.data().purchases().purchasesOfForeigners(year);
@@ -9,6 +9,7 @@ import one.microstream.demo.bookstore.BookStoreDemo;
 import one.microstream.demo.bookstore.data.Book;
 import one.microstream.demo.bookstore.data.InventoryItem;
 import one.microstream.demo.bookstore.data.Shop;
+import one.microstream.demo.bookstore.data.Shops;
 
 /**
  * View to display {@link InventoryItem}s.
@@ -47,7 +48,17 @@ public class ViewInventory extends ViewEntity<InventoryItem>
 	@Override
 	public <R> R compute(final SerializableFunction<Stream<InventoryItem>, R> function)
 	{
-		return BookStoreDemo.getInstance().data().shops().computeInventory(function);
+		final Shops shops = BookStoreDemo.getInstance().data().shops();
+		final Book  book  = this.bookFilter != null
+			? this.bookFilter.getValue()
+			: null;
+		/*
+		 * The shops which carry a book are looked up in the stock index,
+		 * instead of scanning the inventories of all shops.
+		 */
+		return book != null
+			? function.apply(shops.availability(book).stream())
+			: shops.computeInventory(function);
 	}
 
 }
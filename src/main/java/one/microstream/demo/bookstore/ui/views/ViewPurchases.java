@@ -2,6 +2,8 @@ package one.microstream.demo.bookstore.ui.views;
 
 import static org.javamoney.moneta.function.MonetaryFunctions.summarizingMonetary;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.Year;
 import java.util.stream.Stream;
 
@@ -32,6 +34,7 @@ import one.microstream.demo.bookstore.data.Shop;
 public class ViewPurchases extends ViewEntity<Purchase>
 {
 	int      year = Year.now().getValue();
+	Integer  month;
 	Span    totalColumnFooter;
 	private FilterComboBox<Purchase, Shop> shopFilter;
 	private FilterComboBox<Purchase, Customer> customerFilter;
@@ -75,9 +78,21 @@ public class ViewPurchases extends ViewEntity<Purchase>
 			this.listEntities();
 		});
 
+		final IntegerField monthField = new IntegerField();
+		monthField.setStepButtonsVisible(true);
+		monthField.setClearButtonVisible(true);
+		monthField.setMin(1);
+		monthField.setMax(12);
+		monthField.addValueChangeListener(event -> {
+			this.month = event.getValue();
+			this.listEntities();
+		});
+
 		final HorizontalLayout bar = new HorizontalLayout(
 			new Span(this.getTranslation("year")),
-			yearField
+			yearField,
+			new Span(this.getTranslation("month")),
+			monthField
 		);
 		bar.setDefaultVerticalComponentAlignment(Alignment.BASELINE);
 		this.add(bar);
@@ -104,8 +119,19 @@ public class ViewPurchases extends ViewEntity<Purchase>
 	@Override
 	public <R> R compute(final SerializableFunction<Stream<Purchase>, R> function)
 	{
-		return BookStoreDemo.getInstance().data().purchases().computeByYear(
-			this.year,
+		final Purchases purchases = BookStoreDemo.getInstance().data().purchases();
+		if(this.month == null)
+		{
+			return purchases.computeByYear(
+				this.year,
+				function
+			);
+		}
+
+		final LocalDateTime from = LocalDate.of(this.year, this.month, 1).atStartOfDay();
+		return purchases.computeByRange(
+			from,
+			from.plusMonths(1),
 			function
 		);
 	}
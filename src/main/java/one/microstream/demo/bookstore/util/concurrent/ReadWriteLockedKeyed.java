@@ -0,0 +1,153 @@
+package one.microstream.demo.bookstore.util.concurrent;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Facility to execute operations with read and write locks per key.
+ * <p>
+ * In contrast to {@link ReadWriteLockedStriped}, every key gets its own lock,
+ * so operations on different keys never contend.
+ * The locks are kept for the lifetime of this object, so it is meant for a small, bounded set of keys,
+ * e.g. years.
+ * <p>
+ * Non-reentrant read operations are not allowed until all write operations of the affected key
+ * have been finished.
+ * Additionally, a write operation can acquire the read lock, but not vice-versa.
+ */
+public class ReadWriteLockedKeyed
+{
+	/*
+	 * Transient means it is not persisted by MicroStream, but created on demand.
+	 */
+	private transient volatile ConcurrentHashMap<Object, ReadWriteLock> locks;
+
+	public ReadWriteLockedKeyed()
+	{
+		super();
+	}
+
+	private ReadWriteLock lock(final Object key)
+	{
+		/*
+		 * Double-checked locking to reduce the overhead of acquiring a lock
+		 * by testing the locking criterion.
+		 * The field (this.locks) has to be volatile.
+		 */
+		ConcurrentHashMap<Object, ReadWriteLock> locks = this.locks;
+		if(locks == null)
+		{
+			synchronized(this)
+			{
+				if((locks = this.locks) == null)
+				{
+					locks = this.locks = new ConcurrentHashMap<>();
+				}
+			}
+		}
+		return locks.computeIfAbsent(key, k -> new ReentrantReadWriteLock());
+	}
+
+	/**
+	 * Executes an operation protected by a read lock for a given key.
+	 *
+	 * @param <T> the operation's return type
+	 * @param key an arbitrary, non-null key
+	 * @param operation the operation to execute
+	 * @return the operation's result
+	 */
+	public final <T> T read(
+		final Object            key      ,
+		final ValueOperation<T> operation
+	)
+	{
+		final Lock readLock = this.lock(key).readLock();
+		readLock.lock();
+
+		try
+		{
+			return operation.execute();
+		}
+		finally
+		{
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Executes an operation protected by a read lock for a given key.
+	 *
+	 * @param key an arbitrary, non-null key
+	 * @param operation the operation to execute
+	 */
+	public final void read(
+		final Object        key      ,
+		final VoidOperation operation
+	)
+	{
+		final Lock readLock = this.lock(key).readLock();
+		readLock.lock();
+
+		try
+		{
+			operation.execute();
+		}
+		finally
+		{
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Executes an operation protected by a write lock for a given key.
+	 *
+	 * @param <T> the operation's return type
+	 * @param key an arbitrary, non-null key
+	 * @param operation the operation to execute
+	 * @return the operation's result
+	 */
+	public final <T> T write(
+		final Object            key      ,
+		final ValueOperation<T> operation
+	)
+	{
+		final Lock writeLock = this.lock(key).writeLock();
+		writeLock.lock();
+
+		try
+		{
+			return operation.execute();
+		}
+		finally
+		{
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Executes an operation protected by a write lock for a given key.
+	 *
+	 * @param key an arbitrary, non-null key
+	 * @param operation the operation to execute
+	 */
+	public final void write(
+		final Object        key      ,
+		final VoidOperation operation
+	)
+	{
+		final Lock writeLock = this.lock(key).writeLock();
+		writeLock.lock();
+
+		try
+		{
+			operation.execute();
+		}
+		finally
+		{
+			writeLock.unlock();
+		}
+	}
+
+}
@@ -1,7 +1,7 @@
 package one.microstream.demo.bookstore.util.concurrent;
 
 /**
- * Operation with no return value, used by {@link ReadWriteLocked} and {@link ReadWriteLockedStriped}.
+ * Operation with no return value, used by {@link ReadWriteLocked}, {@link ReadWriteLockedStriped} and {@link ReadWriteLockedKeyed}.
  *
  */
 @FunctionalInterface
@@ -0,0 +1,142 @@
+package one.microstream.demo.bookstore.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the reserve, release and restock accounting of {@link Inventory}.
+ */
+class InventoryTest
+{
+	private TestPersister persister;
+	private Inventory     inventory;
+	private Book          book1    ;
+	private Book          book2    ;
+
+	@BeforeEach
+	void setUp()
+	{
+		this.persister = new TestPersister();
+		this.inventory = new Inventory();
+		this.book1     = TestData.book(1, "9780306406157");
+		this.book2     = TestData.book(2, "9783161484100");
+	}
+
+	@Test
+	void restockAddsSlotsAndIncrementsAmounts()
+	{
+		this.inventory.restock(this.book1, 5, this.persister);
+		this.inventory.restock(this.book1, 3, this.persister);
+		this.inventory.restock(this.book2, 1, this.persister);
+
+		assertEquals(8, this.inventory.amount(this.book1));
+		assertEquals(1, this.inventory.amount(this.book2));
+		assertEquals(2, this.inventory.slotCount());
+	}
+
+	@Test
+	void reserveDecrementsAmountUntilStockIsInsufficient()
+	{
+		this.inventory.restock(this.book1, 5, this.persister);
+
+		assertTrue(this.inventory.reserve(this.book1, 3, this.persister));
+		assertEquals(2, this.inventory.amount(this.book1));
+
+		assertFalse(this.inventory.reserve(this.book1, 3, this.persister));
+		assertEquals(2, this.inventory.amount(this.book1));
+
+		assertFalse(this.inventory.reserve(this.book2, 1, this.persister));
+		assertEquals(0, this.inventory.amount(this.book2));
+	}
+
+	@Test
+	void releaseRestoresReservedAmount()
+	{
+		this.inventory.restock(this.book1, 5, this.persister);
+		this.inventory.reserve(this.book1, 4, this.persister);
+		this.inventory.release(this.book1, 4, this.persister);
+
+		assertEquals(5, this.inventory.amount(this.book1));
+	}
+
+	@Test
+	void nonPositiveAmountsAreRejected()
+	{
+		assertThrows(IllegalArgumentException.class, () -> this.inventory.reserve(this.book1, 0, this.persister));
+		assertThrows(IllegalArgumentException.class, () -> this.inventory.restock(this.book1, -1, this.persister));
+	}
+
+	@Test
+	void reserveAllIsAllOrNothing()
+	{
+		this.inventory.restock(this.book1, 5, this.persister);
+		this.inventory.restock(this.book2, 3, this.persister);
+
+		assertFalse(this.inventory.reserveAll(
+			List.of(new PurchaseItem(this.book1, 2), new PurchaseItem(this.book2, 4)),
+			this.persister
+		));
+		assertEquals(5, this.inventory.amount(this.book1));
+		assertEquals(3, this.inventory.amount(this.book2));
+
+		assertTrue(this.inventory.reserveAll(
+			List.of(new PurchaseItem(this.book1, 2), new PurchaseItem(this.book2, 3)),
+			this.persister
+		));
+		assertEquals(3, this.inventory.amount(this.book1));
+		assertEquals(0, this.inventory.amount(this.book2));
+
+		this.inventory.releaseAll(
+			List.of(new PurchaseItem(this.book1, 2), new PurchaseItem(this.book2, 3)),
+			this.persister
+		);
+		assertEquals(5, this.inventory.amount(this.book1));
+		assertEquals(3, this.inventory.amount(this.book2));
+	}
+
+	@Test
+	void concurrentReservesNeverOversell() throws Exception
+	{
+		this.inventory.restock(this.book1, 1_000, this.persister);
+
+		final ExecutorService         executor = Executors.newFixedThreadPool(8);
+		final List<Callable<Integer>> tasks    = new ArrayList<>();
+		for(int i = 0; i < 8; i++)
+		{
+			tasks.add(() ->
+			{
+				int reserved = 0;
+				for(int j = 0; j < 200; j++)
+				{
+					if(this.inventory.reserve(this.book1, 1, this.persister))
+					{
+						reserved++;
+					}
+				}
+				return reserved;
+			});
+		}
+		int reserved = 0;
+		for(final Future<Integer> future : executor.invokeAll(tasks))
+		{
+			reserved += future.get();
+		}
+		executor.shutdown();
+
+		assertEquals(1_000, reserved);
+		assertEquals(0, this.inventory.amount(this.book1));
+	}
+
+}
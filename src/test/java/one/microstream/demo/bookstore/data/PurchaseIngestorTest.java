@@ -0,0 +1,195 @@
+package one.microstream.demo.bookstore.data;
+
+import static one.microstream.demo.bookstore.data.TestData.purchase;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import javax.money.MonetaryAmount;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the batch failure handling of {@link PurchaseIngestor} and the reservation of the purchased books.
+ */
+class PurchaseIngestorTest
+{
+	private TestPersister persister;
+	private Purchases     purchases;
+	private Shop          shop     ;
+	private Employee      employee ;
+	private Customer      customer ;
+	private Book          book     ;
+
+	@BeforeEach
+	void setUp()
+	{
+		this.persister = new TestPersister();
+		this.purchases = new Purchases();
+		this.shop      = new Shop("Shop", TestData.address());
+		this.employee  = new Employee("Employee", TestData.address());
+		this.customer  = new Customer(1, "Customer", TestData.address());
+		this.book      = TestData.book(1, "9780306406157");
+		this.shop.assignId(() -> 1);
+		this.employee.assignId(() -> 1);
+	}
+
+	private PurchaseIngestor ingestor(
+		final boolean reserve     ,
+		final int     maxBatchSize
+	)
+	{
+		/*
+		 * The batch is complete when it reaches the maximum size, so all submitted purchases are in one batch.
+		 */
+		return new PurchaseIngestor(this.purchases, this.persister, reserve, 100, maxBatchSize, Duration.ofSeconds(10));
+	}
+
+	private List<CompletableFuture<Void>> submit(
+		final PurchaseIngestor ingestor,
+		final int              year    ,
+		final int              count
+	)
+	{
+		final List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for(int i = 0; i < count; i++)
+		{
+			futures.add(ingestor.submit(purchase(this.shop, this.employee, this.customer, year, this.book)));
+		}
+		return futures;
+	}
+
+	private long count(final int year)
+	{
+		return this.purchases.computeByYear(year, purchases -> purchases.count());
+	}
+
+	private long count(
+		final Customer customer,
+		final int      year
+	)
+	{
+		return this.purchases.computeByCustomerAndYear(customer, year, purchases -> purchases.count());
+	}
+
+	private static void assertFailed(final List<CompletableFuture<Void>> futures)
+	{
+		futures.forEach(future ->
+		{
+			final ExecutionException e = assertThrows(ExecutionException.class, future::get);
+			assertInstanceOf(PurchasesNotAddedException.class, e.getCause());
+		});
+	}
+
+	private static void assertAdded(final List<CompletableFuture<Void>> futures) throws Exception
+	{
+		for(final CompletableFuture<Void> future : futures)
+		{
+			assertNull(future.get());
+		}
+	}
+
+	@Test
+	void failedYearDoesNotAddOtherYearsTwice() throws Exception
+	{
+		this.shop.inventory().restock(this.book, 10, this.persister);
+		this.purchases.add(purchase(this.shop, this.employee, this.customer, 2020, this.book), this.persister);
+
+		/*
+		 * The new year can't be stored, the existing one can.
+		 */
+		this.persister.failStoring(instance -> instance instanceof Map && ((Map<?, ?>)instance).containsKey(2021));
+
+		final List<CompletableFuture<Void>> existingYear;
+		final List<CompletableFuture<Void>> newYear;
+		try(PurchaseIngestor ingestor = this.ingestor(true, 4))
+		{
+			existingYear = this.submit(ingestor, 2020, 2);
+			newYear      = this.submit(ingestor, 2021, 2);
+		}
+
+		assertAdded(existingYear);
+		assertFailed(newYear);
+		assertEquals(3, this.count(2020));
+		assertEquals(0, this.count(2021));
+		assertEquals(2020, this.purchases.years().upperEndpoint());
+		// only the added purchases of the batch are reserved
+		assertEquals(8, this.shop.inventory().amount(this.book));
+	}
+
+	@Test
+	void failedStoreOfExistingYearIsRemovedFromMemory() throws Exception
+	{
+		this.purchases.add(purchase(this.shop, this.employee, this.customer, 2020, this.book), this.persister);
+		final MonetaryAmount revenue = this.purchases.revenueOfShopInYear(this.shop, 2020);
+
+		/*
+		 * The batch needs a new list for the other customer, but no list can be stored.
+		 */
+		final Customer other = new Customer(2, "Other", TestData.address());
+		this.persister.failStoring(instance -> instance instanceof PurchaseList);
+
+		final List<CompletableFuture<Void>> futures = new ArrayList<>();
+		try(PurchaseIngestor ingestor = this.ingestor(false, 2))
+		{
+			futures.add(ingestor.submit(purchase(this.shop, this.employee, this.customer, 2020, this.book)));
+			futures.add(ingestor.submit(purchase(this.shop, this.employee, other,         2020, this.book)));
+		}
+
+		assertFailed(futures);
+		assertEquals(1, this.count(2020));
+		assertEquals(revenue, this.purchases.revenueOfShopInYear(this.shop, 2020));
+		assertEquals(0, this.count(other, 2020));
+		assertEquals(1, this.purchases.bestSellerList(2020).get(0).amount());
+
+		// the reverted year is intact, later purchases are added to it
+		this.persister.failStoring(instance -> false);
+		this.purchases.add(purchase(this.shop, this.employee, other, 2020, this.book), this.persister);
+		assertEquals(2, this.count(2020));
+		assertEquals(1, this.count(other, 2020));
+		assertEquals(2, this.purchases.bestSellerList(2020).get(0).amount());
+	}
+
+	@Test
+	void purchasesWithInsufficientStockFailAlone() throws Exception
+	{
+		this.shop.inventory().restock(this.book, 2, this.persister);
+
+		final List<CompletableFuture<Void>> futures;
+		try(PurchaseIngestor ingestor = this.ingestor(true, 3))
+		{
+			futures = this.submit(ingestor, 2020, 3);
+		}
+
+		assertAdded(futures.subList(0, 2));
+		assertFailed(futures.subList(2, 3));
+		assertEquals(2, this.count(2020));
+		assertEquals(0, this.shop.inventory().amount(this.book));
+	}
+
+	@Test
+	void purchasesAreAddedWithoutReservation() throws Exception
+	{
+		this.shop.inventory().restock(this.book, 1, this.persister);
+
+		final List<CompletableFuture<Void>> futures;
+		try(PurchaseIngestor ingestor = this.ingestor(false, 3))
+		{
+			futures = this.submit(ingestor, 2020, 3);
+		}
+
+		assertAdded(futures);
+		assertEquals(3, this.count(2020));
+		assertEquals(1, this.shop.inventory().amount(this.book));
+	}
+
+}
@@ -0,0 +1,122 @@
+package one.microstream.demo.bookstore.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the chunk growth of {@link PurchaseList} and the objects which have to be stored per addition.
+ */
+class PurchaseListTest
+{
+	private Shop     shop    ;
+	private Employee employee;
+	private Customer customer;
+	private Book     book    ;
+
+	@BeforeEach
+	void setUp()
+	{
+		this.shop     = new Shop("Shop", TestData.address());
+		this.employee = new Employee("Employee", TestData.address());
+		this.customer = new Customer(1, "Customer", TestData.address());
+		this.book     = TestData.book(1, "9780306406157");
+	}
+
+	private List<Purchase> purchases(final int count)
+	{
+		final List<Purchase> purchases = new ArrayList<>(count);
+		for(int i = 0; i < count; i++)
+		{
+			purchases.add(TestData.purchase(this.shop, this.employee, this.customer, 2020, this.book));
+		}
+		return purchases;
+	}
+
+	private static Set<Object> newChangedObjects()
+	{
+		return Collections.newSetFromMap(new IdentityHashMap<>());
+	}
+
+	@Test
+	void purchasesAreKeptInOrderAcrossChunks()
+	{
+		final PurchaseList   list      = new PurchaseList();
+		final List<Purchase> purchases = this.purchases(1000);
+		purchases.forEach(purchase -> list.add(purchase, newChangedObjects(), Rollback.NONE));
+
+		assertEquals(1000, list.size());
+		assertEquals(purchases, list.toList());
+	}
+
+	@Test
+	void additionWithinChunkOnlyChangesChunkAndHead()
+	{
+		final PurchaseList list = new PurchaseList();
+		this.purchases(300).forEach(purchase -> list.add(purchase, newChangedObjects(), Rollback.NONE));
+
+		final Set<Object> changedObjects = newChangedObjects();
+		list.add(this.purchases(1).get(0), changedObjects, Rollback.NONE);
+
+		// the second chunk and the list itself
+		assertEquals(2, changedObjects.size());
+		assertTrue(changedObjects.contains(list));
+		assertTrue(changedObjects.stream().anyMatch(object -> object instanceof Purchase[]));
+	}
+
+	@Test
+	void chunksAreAddedAtTheChunkBoundaries()
+	{
+		final PurchaseList list = new PurchaseList();
+		for(int size = 0; size < 1024; size++)
+		{
+			final Set<Object> changedObjects = newChangedObjects();
+			list.add(this.purchases(1).get(0), changedObjects, Rollback.NONE);
+
+			/*
+			 * The array of chunks is changed when the first chunk grows, or a new chunk is started.
+			 */
+			final boolean chunkStarted = size % 256 == 0;
+			final boolean firstGrows   = size < 256 && size >= 8 && Integer.bitCount(size) == 1;
+			assertEquals(
+				chunkStarted || firstGrows,
+				changedObjects.stream().anyMatch(object -> object instanceof Purchase[][]),
+				"size " + size
+			);
+		}
+		assertEquals(1024, list.size());
+	}
+
+	@Test
+	void revertedAdditionsRestoreTheChunks()
+	{
+		final PurchaseList   list      = new PurchaseList();
+		final List<Purchase> purchases = this.purchases(255);
+		purchases.forEach(purchase -> list.add(purchase, newChangedObjects(), Rollback.NONE));
+
+		/*
+		 * Crosses the boundaries of the first and the second chunk.
+		 */
+		final Rollback rollback = new Rollback();
+		this.purchases(300).forEach(purchase -> list.add(purchase, newChangedObjects(), rollback));
+		assertEquals(555, list.size());
+
+		rollback.revert();
+		assertEquals(255, list.size());
+		assertEquals(purchases, list.toList());
+
+		final List<Purchase> more = this.purchases(2);
+		more.forEach(purchase -> list.add(purchase, newChangedObjects(), Rollback.NONE));
+		assertEquals(257, list.size());
+		assertEquals(more, list.toList().subList(255, 257));
+	}
+
+}
@@ -0,0 +1,103 @@
+package one.microstream.demo.bookstore.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import one.microstream.demo.bookstore.BookStoreDemo;
+import one.microstream.storage.embedded.types.EmbeddedStorage;
+import one.microstream.storage.embedded.types.EmbeddedStorageManager;
+
+/**
+ * Tests that evicted purchases are loaded again from a real storage,
+ * and that no cached results keep them reachable.
+ */
+class PurchasesEvictionManagerTest
+{
+	@TempDir
+	Path directory;
+
+	private EmbeddedStorageManager storage  ;
+	private Purchases              purchases;
+	private Shop                   shop     ;
+	private Employee               employee ;
+	private Customer               customer ;
+	private Book                   book     ;
+
+	@BeforeEach
+	void setUp()
+	{
+		this.storage   = EmbeddedStorage.start(new Purchases(), this.directory);
+		this.purchases = (Purchases)this.storage.root();
+		this.shop      = new Shop("Shop", TestData.address());
+		this.employee  = new Employee("Employee", TestData.address());
+		this.customer  = new Customer(1, "Customer", TestData.address());
+		this.book      = TestData.book(1, "9780306406157");
+		this.shop.assignId(() -> 1);
+		this.employee.assignId(() -> 1);
+
+		for(int i = 0; i < 10; i++)
+		{
+			this.purchases.add(this.purchase(2020), this.storage);
+		}
+		// the latest year is resident and not evicted
+		this.purchases.add(this.purchase(2021), this.storage);
+	}
+
+	@AfterEach
+	void tearDown()
+	{
+		this.storage.shutdown();
+	}
+
+	private Purchase purchase(final int year)
+	{
+		return TestData.purchase(this.shop, this.employee, this.customer, year, this.book);
+	}
+
+	private long count(final int year)
+	{
+		return this.purchases.computeByYear(year, purchases -> purchases.count());
+	}
+
+	@Test
+	void evictedYearIsLoadedAgain()
+	{
+		final PurchasesEvictionManager manager = new PurchasesEvictionManager(this.purchases, 0.75, 1.0);
+
+		final int evicted = manager.evict();
+		assertTrue(evicted > 0);
+		assertEquals(evicted, manager.evictionCount());
+
+		final long loadCount = manager.loadCount();
+		assertEquals(10, this.count(2020));
+		assertTrue(manager.loadCount() > loadCount);
+		assertEquals(BookStoreDemo.money(200.0), this.purchases.revenueOfShopInYear(this.shop, 2020));
+		assertEquals(10, this.purchases.bestSellerList(2020).get(0).amount());
+
+		// the evicted year is added to after loading
+		this.purchases.add(this.purchase(2020), this.storage);
+		assertEquals(11, this.count(2020));
+		assertEquals(1, this.count(2021));
+	}
+
+	@Test
+	void evictionDiscardsCachedResults()
+	{
+		this.purchases.purchasesOfForeigners(2020);
+		this.purchases.purchasesOfForeigners(2020);
+		final long misses = this.purchases.resultCacheStats().missCount();
+
+		new PurchasesEvictionManager(this.purchases, 0.75, 1.0).evict();
+
+		this.purchases.purchasesOfForeigners(2020);
+		assertEquals(misses + 1, this.purchases.resultCacheStats().missCount());
+	}
+
+}
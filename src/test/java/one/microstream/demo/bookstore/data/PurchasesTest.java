@@ -0,0 +1,259 @@
+package one.microstream.demo.bookstore.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import one.microstream.demo.bookstore.BookStoreDemo;
+
+/**
+ * Tests the per-year locking of {@link Purchases} and concurrent additions,
+ * which are stored together, see {@link GroupCommit}.
+ */
+class PurchasesTest
+{
+	private final static long TIMEOUT_SECONDS = 10L;
+
+	private TestPersister   persister;
+	private Purchases       purchases;
+	private Shop            shop     ;
+	private Employee        employee ;
+	private Customer        customer ;
+	private Book            book     ;
+	private ExecutorService executor ;
+
+	@BeforeEach
+	void setUp()
+	{
+		this.persister = new TestPersister();
+		this.purchases = new Purchases();
+		this.shop      = new Shop("Shop", TestData.address());
+		this.employee  = new Employee("Employee", TestData.address());
+		this.customer  = new Customer(1, "Customer", TestData.address());
+		this.book      = TestData.book(1, "9780306406157");
+		this.shop.assignId(() -> 1);
+		this.employee.assignId(() -> 1);
+		this.executor  = Executors.newFixedThreadPool(8);
+	}
+
+	@AfterEach
+	void tearDown()
+	{
+		this.executor.shutdownNow();
+	}
+
+	private Purchase purchase(final int year)
+	{
+		return TestData.purchase(this.shop, this.employee, this.customer, year, this.book);
+	}
+
+	private long count(final int year)
+	{
+		return this.purchases.computeByYear(year, purchases -> purchases.count());
+	}
+
+	@Test
+	void otherYearIsAddedWhileYearIsRead() throws Exception
+	{
+		this.purchases.add(this.purchase(2020), this.persister);
+
+		/*
+		 * The new year needs its write lock, which doesn't depend on the read lock of the other year.
+		 */
+		final boolean added = this.purchases.computeByYear(2020, purchases ->
+		{
+			final CompletableFuture<Void> future = CompletableFuture.runAsync(
+				() -> this.purchases.add(this.purchase(2021), this.persister),
+				this.executor
+			);
+			try
+			{
+				future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+				return true;
+			}
+			catch(final Exception e)
+			{
+				return false;
+			}
+		});
+
+		assertTrue(added);
+		assertEquals(1, this.count(2020));
+		assertEquals(1, this.count(2021));
+	}
+
+	@Test
+	void sameYearIsAddedWhileYearIsRead() throws Exception
+	{
+		this.purchases.add(this.purchase(2020), this.persister);
+
+		/*
+		 * Purchases of an existing year are added under its read lock.
+		 */
+		final boolean added = this.purchases.computeByYear(2020, purchases ->
+		{
+			final CompletableFuture<Void> future = CompletableFuture.runAsync(
+				() -> this.purchases.add(this.purchase(2020), this.persister),
+				this.executor
+			);
+			try
+			{
+				future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+				return true;
+			}
+			catch(final Exception e)
+			{
+				return false;
+			}
+		});
+
+		assertTrue(added);
+		assertEquals(2, this.count(2020));
+	}
+
+	@Test
+	void newYearIsCreatedOnceByConcurrentAdds() throws Exception
+	{
+		final int             threads = 8;
+		final CyclicBarrier   start   = new CyclicBarrier(threads);
+		final List<Future<?>> futures = new ArrayList<>();
+		for(int i = 0; i < threads; i++)
+		{
+			futures.add(this.executor.submit(() ->
+			{
+				start.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+				this.purchases.add(this.purchase(2020), this.persister);
+				return null;
+			}));
+		}
+		for(final Future<?> future : futures)
+		{
+			future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		}
+
+		assertEquals(threads, this.count(2020));
+		assertEquals(2020, this.purchases.years().lowerEndpoint());
+		assertEquals(2020, this.purchases.years().upperEndpoint());
+		assertEquals(threads, this.purchases.bestSellerList(2020).get(0).amount());
+	}
+
+	/**
+	 * Adds purchases of several shops concurrently to an existing year.
+	 *
+	 * @return the shops
+	 */
+	private List<Shop> addConcurrently(
+		final int threads           ,
+		final int purchasesPerThread
+	)
+	throws Exception
+	{
+		final List<Shop>     shops     = new ArrayList<>();
+		final List<Employee> employees = new ArrayList<>();
+		/*
+		 * The ids of the default shop and employee are not reused.
+		 */
+		for(int i = 2; i <= 5; i++)
+		{
+			final int      id       = i;
+			final Shop     shop     = new Shop("Shop " + id, TestData.address());
+			final Employee employee = new Employee("Employee " + id, TestData.address());
+			shop.assignId(() -> id);
+			employee.assignId(() -> id);
+			shops.add(shop);
+			employees.add(employee);
+		}
+
+		final CyclicBarrier   start   = new CyclicBarrier(threads);
+		final List<Future<?>> futures = new ArrayList<>();
+		for(int t = 0; t < threads; t++)
+		{
+			futures.add(this.executor.submit(() ->
+			{
+				start.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+				for(int i = 0; i < purchasesPerThread; i++)
+				{
+					final int index = i % shops.size();
+					this.purchases.add(
+						TestData.purchase(shops.get(index), employees.get(index), this.customer, 2020, this.book),
+						this.persister
+					);
+				}
+				return null;
+			}));
+		}
+		/*
+		 * All writers are finished before a failure is reported.
+		 */
+		ExecutionException failure = null;
+		for(final Future<?> future : futures)
+		{
+			try
+			{
+				future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			}
+			catch(final ExecutionException e)
+			{
+				failure = failure == null ? e : failure;
+			}
+		}
+		if(failure != null)
+		{
+			throw failure;
+		}
+		return shops;
+	}
+
+	@Test
+	void concurrentAddsAreConsistent() throws Exception
+	{
+		this.purchases.add(this.purchase(2020), this.persister);
+
+		final List<Shop> shops = this.addConcurrently(8, 200);
+
+		assertEquals(1601, this.count(2020));
+		assertEquals(1601, this.purchases.bestSellerList(2020).get(0).amount());
+		for(final Shop shop : shops)
+		{
+			final long count = this.purchases.computeByShopAndYear(shop, 2020, purchases -> purchases.count());
+			assertEquals(400, count);
+			assertEquals(
+				BookStoreDemo.money(20.0).multiply(count),
+				this.purchases.revenueOfShopInYear(shop, 2020)
+			);
+		}
+	}
+
+	@Test
+	void failedConcurrentAddsAreReverted() throws Exception
+	{
+		this.purchases.add(this.purchase(2020), this.persister);
+		this.persister.failStoring(instance -> instance instanceof PurchaseList);
+
+		final ExecutionException e = assertThrows(ExecutionException.class, () -> this.addConcurrently(8, 1));
+		assertEquals(IllegalStateException.class, e.getCause().getClass());
+		assertEquals(1, this.count(2020));
+		assertEquals(1, this.purchases.bestSellerList(2020).get(0).amount());
+		assertEquals(BookStoreDemo.money(20.0), this.purchases.revenueOfShopInYear(this.shop, 2020));
+
+		this.persister.failStoring(instance -> false);
+		this.addConcurrently(8, 10);
+		assertEquals(81, this.count(2020));
+		assertEquals(81, this.purchases.bestSellerList(2020).get(0).amount());
+	}
+
+}
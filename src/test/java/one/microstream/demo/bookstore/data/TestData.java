@@ -0,0 +1,60 @@
+package one.microstream.demo.bookstore.data;
+
+import static one.microstream.demo.bookstore.BookStoreDemo.money;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Factory of minimal entities for tests, which don't need a storage.
+ */
+interface TestData
+{
+	public static Address address()
+	{
+		return new Address(
+			"Main Street 1",
+			"",
+			"12345",
+			new City("Springfield", new State("Oregon", new Country("United States", "US")))
+		);
+	}
+
+	public static Book book(
+		final int    id    ,
+		final String isbn13
+	)
+	{
+		final Book book = new Book(
+			isbn13,
+			"Title " + id,
+			new Author("Author " + id, address()),
+			new Genre("Genre"),
+			new Publisher("Publisher", address()),
+			new Language(Locale.ENGLISH),
+			money(10.0),
+			money(20.0)
+		);
+		book.assignId(() -> id);
+		return book;
+	}
+
+	public static Purchase purchase(
+		final Shop     shop    ,
+		final Employee employee,
+		final Customer customer,
+		final int      year    ,
+		final Book     book
+	)
+	{
+		return new Purchase(
+			shop,
+			employee,
+			customer,
+			LocalDateTime.of(year, 6, 1, 12, 0),
+			List.of(new PurchaseItem(book, 1))
+		);
+	}
+
+}
@@ -0,0 +1,84 @@
+package one.microstream.demo.bookstore.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import one.microstream.persistence.types.Persister;
+import one.microstream.persistence.types.Storer;
+
+/**
+ * {@link Persister} for tests, which doesn't store anything, but assigns ascending object ids.
+ * Stores of specific objects can be made to fail, to simulate storage errors.
+ */
+class TestPersister implements Persister
+{
+	private final    AtomicLong        objectId = new AtomicLong();
+	private volatile Predicate<Object> failing  = instance -> false;
+
+	TestPersister()
+	{
+		super();
+	}
+
+	/**
+	 * Lets all following stores of matching objects fail.
+	 *
+	 * @param failing the objects whose stores fail
+	 */
+	void failStoring(final Predicate<Object> failing)
+	{
+		this.failing = failing;
+	}
+
+	@Override
+	public long store(final Object instance)
+	{
+		if(this.failing.test(instance))
+		{
+			throw new IllegalStateException("Store failed: " + instance.getClass().getSimpleName());
+		}
+		return this.objectId.incrementAndGet();
+	}
+
+	@Override
+	public long[] storeAll(final Object... instances)
+	{
+		final long[] objectIds = new long[instances.length];
+		for(int i = 0; i < instances.length; i++)
+		{
+			objectIds[i] = this.store(instances[i]);
+		}
+		return objectIds;
+	}
+
+	@Override
+	public void storeAll(final Iterable<?> instances)
+	{
+		instances.forEach(this::store);
+	}
+
+	@Override
+	public Object getObject(final long objectId)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Storer createLazyStorer()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Storer createStorer()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Storer createEagerStorer()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+}